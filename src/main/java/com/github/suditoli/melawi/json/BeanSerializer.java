@@ -0,0 +1,353 @@
+package com.github.suditoli.melawi.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes beans and records as JSON objects straight to the writer, without
+ * copying them into a JSONObject first.
+ * <p>
+ * The properties of a class are found once with reflection. Beans are written
+ * through their non-static, non-transient fields, including the inherited
+ * ones, as {@link com.github.suditoli.melawi.json.parser.JSONParser} binds
+ * them; records through their components. The values are read with lambdas
+ * built by LambdaMetafactory from the public getters, record accessors, or,
+ * when the class is not accessible or a field has no getter, with method
+ * handles.
+ */
+final class BeanSerializer implements JSONSerializer<Object> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Method IS_RECORD = classMethod("isRecord");
+    private static final Method GET_RECORD_COMPONENTS = classMethod("getRecordComponents");
+
+    private static Method classMethod(String name) {
+        try {
+            return Class.class.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private final Property[] properties;
+
+    private BeanSerializer(Property[] properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param type
+     * @return Whether the type is a record, or a class outside of the JDK
+     * that does not override toString() and so has no text of its own.
+     */
+    static boolean supports(Class<?> type) {
+        if (type == Object.class || type.isSynthetic() || type.isInterface() || type.isPrimitive()) {
+            return false;
+        } else if (isRecord(type)) {
+            return true;
+        }
+        try {
+            return type.getMethod("toString").getDeclaringClass() == Object.class && type.getClassLoader() != null;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isRecord(Class<?> type) {
+        try {
+            return IS_RECORD != null && (Boolean) IS_RECORD.invoke(type);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param type
+     * @return The serializer of the type, or null if reflection cannot open
+     * it, for example a JDK class that is not exported to this module.
+     */
+    static BeanSerializer of(Class<?> type) {
+        List<Property> list = new ArrayList<>();
+        try {
+            if (isRecord(type)) {
+                for (Object component : (Object[]) GET_RECORD_COMPONENTS.invoke(type)) {
+                    Method accessor = (Method) component.getClass().getMethod("getAccessor").invoke(component);
+                    list.add(property(list.isEmpty(), accessor.getName(), accessor, null));
+                }
+            } else {
+                for (Field field : fields(type)) {
+                    list.add(property(list.isEmpty(), field.getName(), getter(type, field), field));
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // InaccessibleObjectException is a RuntimeException since Java 9.
+            return null;
+        }
+        return new BeanSerializer(list.toArray(new Property[list.size()]));
+    }
+
+    /**
+     * @return The non-static, non-transient fields of a class, inherited ones
+     * first; a field hides those of its superclasses.
+     */
+    private static List<Field> fields(Class<?> type) {
+        List<Field> list = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Class<?> c = type; c != Object.class && c != null; c = c.getSuperclass()) {
+            List<Field> own = new ArrayList<>();
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()
+                        && names.add(field.getName())) {
+                    own.add(field);
+                }
+            }
+            list.addAll(0, own);
+        }
+        return list;
+    }
+
+    /**
+     * @return The public getter of a field, or null.
+     */
+    private static Method getter(Class<?> type, Field field) {
+        String suffix = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        for (String prefix : field.getType() == boolean.class ? new String[]{"is", "get"} : new String[]{"get"}) {
+            try {
+                Method method = type.getMethod(prefix + suffix);
+                if (method.getReturnType() == field.getType() && !Modifier.isStatic(method.getModifiers())) {
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                // try the next prefix
+            }
+        }
+        return null;
+    }
+
+    private static Property property(boolean first, String name, Method getter, Field field) throws IllegalAccessException {
+        String prefix = (first ? "{\"" : ",\"") + JSONValue.escape(name) + "\":";
+        MethodHandle handle;
+        boolean direct = true;
+        try {
+            handle = getter != null ? LOOKUP.unreflect(getter) : null;
+        } catch (IllegalAccessException e) {
+            getter.setAccessible(true);
+            handle = LOOKUP.unreflect(getter);
+            direct = false;
+        }
+        if (handle == null) {
+            field.setAccessible(true);
+            handle = LOOKUP.unreflectGetter(field);
+            direct = false;
+        }
+        Class<?> type = handle.type().returnType();
+        if (type == boolean.class) {
+            return new BooleanProperty(prefix, accessor(handle, direct, Predicate.class, "test", boolean.class));
+        } else if (type == int.class || type == short.class || type == byte.class) {
+            return new IntProperty(prefix, accessor(handle, direct, ToIntFunction.class, "applyAsInt", int.class));
+        } else if (type == long.class) {
+            return new LongProperty(prefix, accessor(handle, direct, ToLongFunction.class, "applyAsLong", long.class));
+        } else if (type == double.class) {
+            return new DoubleProperty(prefix, accessor(handle, direct, ToDoubleFunction.class, "applyAsDouble", double.class));
+        }
+        return new ObjectProperty(prefix, accessor(handle, direct, Function.class, "apply",
+                MethodType.methodType(type).wrap().returnType()));
+    }
+
+    /**
+     * @param handle - Reads the value from the instance.
+     * @param direct - Whether the method of the handle is accessible from
+     * here, so that a lambda can call it. Otherwise, and for fields, the
+     * accessor calls the handle with invokeExact.
+     * @param iface - The functional interface to implement.
+     * @param name - The name of its method.
+     * @param returnType - The return type of its method, or the boxed type of
+     * the value for Function.
+     * @return The accessor.
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> F accessor(MethodHandle handle, boolean direct, Class<?> iface, String name, Class<?> returnType) {
+        MethodType erased = MethodType.methodType(returnType.isPrimitive() ? returnType : Object.class, Object.class);
+        if (direct) {
+            try {
+                return (F) LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(iface), erased, handle,
+                        handle.type().changeReturnType(returnType)).getTarget().invoke();
+            } catch (Throwable e) {
+                // fall back on the method handle
+            }
+        }
+        MethodHandle h = handle.asType(erased);
+        if (iface == Predicate.class) {
+            return (F) (Predicate<Object>) bean -> {
+                try {
+                    return (boolean) h.invokeExact(bean);
+                } catch (Throwable e) {
+                    throw failure(e);
+                }
+            };
+        } else if (iface == ToIntFunction.class) {
+            return (F) (ToIntFunction<Object>) bean -> {
+                try {
+                    return (int) h.invokeExact(bean);
+                } catch (Throwable e) {
+                    throw failure(e);
+                }
+            };
+        } else if (iface == ToLongFunction.class) {
+            return (F) (ToLongFunction<Object>) bean -> {
+                try {
+                    return (long) h.invokeExact(bean);
+                } catch (Throwable e) {
+                    throw failure(e);
+                }
+            };
+        } else if (iface == ToDoubleFunction.class) {
+            return (F) (ToDoubleFunction<Object>) bean -> {
+                try {
+                    return (double) h.invokeExact(bean);
+                } catch (Throwable e) {
+                    throw failure(e);
+                }
+            };
+        }
+        return (F) (Function<Object, Object>) bean -> {
+            try {
+                return (Object) h.invokeExact(bean);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        };
+    }
+
+    private static RuntimeException failure(Throwable e) {
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return e instanceof RuntimeException ? (RuntimeException) e : new JSONException(e);
+    }
+
+    @Override
+    public void writeJSONString(Object value, Writer out) throws IOException {
+        if (properties.length == 0) {
+            out.write("{}");
+            return;
+        }
+        for (Property property : properties) {
+            property.write(value, out);
+        }
+        out.write('}');
+    }
+
+    private abstract static class Property {
+
+        /**
+         * the separator and the name of the property
+         */
+        final String prefix;
+
+        Property(String prefix) {
+            this.prefix = prefix;
+        }
+
+        abstract void write(Object bean, Writer out) throws IOException;
+    }
+
+    private static final class BooleanProperty extends Property {
+
+        private final Predicate<Object> accessor;
+
+        BooleanProperty(String prefix, Predicate<Object> accessor) {
+            super(prefix);
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(Object bean, Writer out) throws IOException {
+            out.write(prefix);
+            out.write(accessor.test(bean) ? "true" : "false");
+        }
+    }
+
+    private static final class IntProperty extends Property {
+
+        private final ToIntFunction<Object> accessor;
+
+        IntProperty(String prefix, ToIntFunction<Object> accessor) {
+            super(prefix);
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(Object bean, Writer out) throws IOException {
+            out.write(prefix);
+            out.write(Integer.toString(accessor.applyAsInt(bean)));
+        }
+    }
+
+    private static final class LongProperty extends Property {
+
+        private final ToLongFunction<Object> accessor;
+
+        LongProperty(String prefix, ToLongFunction<Object> accessor) {
+            super(prefix);
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(Object bean, Writer out) throws IOException {
+            out.write(prefix);
+            out.write(Long.toString(accessor.applyAsLong(bean)));
+        }
+    }
+
+    private static final class DoubleProperty extends Property {
+
+        private final ToDoubleFunction<Object> accessor;
+
+        DoubleProperty(String prefix, ToDoubleFunction<Object> accessor) {
+            super(prefix);
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(Object bean, Writer out) throws IOException {
+            out.write(prefix);
+            double d = accessor.applyAsDouble(bean);
+            out.write(Double.isInfinite(d) || Double.isNaN(d) ? "null" : Double.toString(d));
+        }
+    }
+
+    private static final class ObjectProperty extends Property {
+
+        private final Function<Object, Object> accessor;
+
+        ObjectProperty(String prefix, Function<Object, Object> accessor) {
+            super(prefix);
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(Object bean, Writer out) throws IOException {
+            out.write(prefix);
+            JSONValue.writeJSONString(accessor.apply(bean), out);
+        }
+    }
+}
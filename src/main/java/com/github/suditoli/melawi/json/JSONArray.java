@@ -36,6 +36,15 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
         super();
     }
 
+    /**
+     * Constructs an empty JSONArray with the specified initial capacity.
+     *
+     * @param initialCapacity
+     */
+    public JSONArray(int initialCapacity) {
+        super(initialCapacity);
+    }
+
     /**
      * Constructs a JSONArray containing the elements of the specified
      * collection, in the order they are returned by the collection's iterator.
@@ -89,9 +98,24 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
         return this;
     }
 
+    /**
+     * Get the value, converting a {@link LazyNumber} to the Long, BigInteger
+     * or Double the parser would have built eagerly, and a
+     * {@link StringSlice} to a String.
+     */
+    private Object getNumber(int index) {
+        Object object = this.get(index);
+        if (object instanceof LazyNumber) {
+            return ((LazyNumber) object).value();
+        } else if (object instanceof StringSlice) {
+            return object.toString();
+        }
+        return object;
+    }
+
     public boolean getBoolean(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = Boolean.valueOf((String) object);
             }
@@ -111,7 +135,7 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
 
     public byte getByte(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = Byte.parseByte((String) object);
             }
@@ -131,7 +155,7 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
 
     public int getInteger(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = Integer.parseInt((String) object);
             }
@@ -151,7 +175,7 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
 
     public long getLong(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = Long.parseLong((String) object);
             }
@@ -171,7 +195,7 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
 
     public BigInteger getBigInteger(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = new BigInteger((String) object);
             }
@@ -191,7 +215,7 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
 
     public short getShort(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = Short.valueOf((String) object);
             }
@@ -211,7 +235,7 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
 
     public float getFloat(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = Float.valueOf((String) object);
             }
@@ -231,7 +255,7 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
 
     public double getDouble(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = Double.valueOf((String) object);
             }
@@ -251,7 +275,7 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
 
     public BigDecimal getBigDecimal(final int index) {
         try {
-            Object object = this.get(index);
+            Object object = getNumber(index);
             if (object instanceof String) {
                 object = new BigDecimal((String) object);
             }
@@ -272,6 +296,9 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
     public String getString(final int index) {
         try {
             Object object = this.get(index);
+            if (object instanceof StringSlice) {
+                return object.toString();
+            }
             return (String) object;
         } catch (Exception ex) {
             throw wrongValueFormatException(index, "String", null);
@@ -334,8 +361,8 @@ public class JSONArray extends ArrayList implements JSONAware, JSONStreamAware {
             return true;
         } else {
             Object object = this.get(index);
-            if (object instanceof String) {
-                return getString(index).isEmpty();
+            if (object instanceof CharSequence) {
+                return ((CharSequence) object).length() == 0;
             } else if (object instanceof JSONObject) {
                 return getJSONObject(index).isEmpty();
             } else if (object instanceof JSONArray) {
@@ -35,6 +35,16 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
         super();
     }
 
+    /**
+     * Constructs an empty JSONObject able to hold the given number of
+     * mappings without rehashing.
+     *
+     * @param expectedSize
+     */
+    public JSONObject(int expectedSize) {
+        super(expectedSize < 3 ? 4 : (int) Math.min(expectedSize / 0.75f + 1, 1 << 30));
+    }
+
     /**
      * Allows creation of a JSONObject from a Map. After that, both the
      * generated JSONObject and the Map can be modified independently.
@@ -118,9 +128,24 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
         return this;
     }
 
+    /**
+     * Get the value, converting a {@link LazyNumber} to the Long, BigInteger
+     * or Double the parser would have built eagerly, and a
+     * {@link StringSlice} to a String.
+     */
+    private Object getNumber(String key) {
+        Object object = this.get(key);
+        if (object instanceof LazyNumber) {
+            return ((LazyNumber) object).value();
+        } else if (object instanceof StringSlice) {
+            return object.toString();
+        }
+        return object;
+    }
+
     public boolean getBoolean(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = Boolean.valueOf((String) object);
             }
@@ -140,7 +165,7 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
 
     public byte getByte(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = Byte.parseByte((String) object);
             }
@@ -160,7 +185,7 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
 
     public int getInteger(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = Integer.parseInt((String) object);
             }
@@ -180,7 +205,7 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
 
     public long getLong(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = Long.parseLong((String) object);
             }
@@ -200,7 +225,7 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
 
     public BigInteger getBigInteger(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = new BigInteger((String) object);
             }
@@ -220,7 +245,7 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
 
     public short getShort(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = Short.valueOf((String) object);
             }
@@ -240,7 +265,7 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
 
     public float getFloat(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = Float.valueOf((String) object);
             }
@@ -260,7 +285,7 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
 
     public double getDouble(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = Double.valueOf((String) object);
             }
@@ -280,7 +305,7 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
 
     public BigDecimal getBigDecimal(final String key) {
         try {
-            Object object = this.get(key);
+            Object object = getNumber(key);
             if (object instanceof String) {
                 object = new BigDecimal((String) object);
             }
@@ -301,6 +326,9 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
     public String getString(final String key) {
         try {
             Object object = this.get(key);
+            if (object instanceof StringSlice) {
+                return object.toString();
+            }
             return (String) object;
         } catch (Exception ex) {
             throw wrongValueFormatException(key, "String", null);
@@ -365,8 +393,8 @@ public class JSONObject extends HashMap implements Map, JSONAware, JSONStreamAwa
     public boolean isEmpty(String key) {
         if (has(key)) {
             Object object = this.get(key);
-            if (object instanceof String) {
-                return getString(key).isEmpty();
+            if (object instanceof CharSequence) {
+                return ((CharSequence) object).length() == 0;
             } else if (object instanceof JSONObject) {
                 return getJSONObject(key).isEmpty();
             } else if (object instanceof JSONArray) {
@@ -0,0 +1,24 @@
+package com.github.suditoli.melawi.json;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the JSON text of the instances of a class that does not write
+ * itself.
+ *
+ * @param <T>
+ * @see JSONValue#registerSerializer(Class, JSONSerializer)
+ */
+@FunctionalInterface
+public interface JSONSerializer<T> {
+
+    /**
+     * write JSON string of value to out.
+     *
+     * @param value - Not null.
+     * @param out
+     * @throws IOException
+     */
+    void writeJSONString(T value, Writer out) throws IOException;
+}
@@ -4,24 +4,69 @@
  */
 package com.github.suditoli.melawi.json;
 
+import com.github.suditoli.melawi.json.codec.Codec;
+import com.github.suditoli.melawi.json.codec.Codecs;
+import com.github.suditoli.melawi.json.codec.JsonCodec;
 import com.github.suditoli.melawi.json.parser.JSONParser;
 import com.github.suditoli.melawi.json.parser.ParseException;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author FangYidong<fangyidong@yahoo.com.cn>
  */
 public class JSONValue {
 
+    private static final Map<Class<?>, JSONSerializer<?>> REGISTERED = new ConcurrentHashMap<>();
+
+    /**
+     * the serializer of each class, null for the classes written by
+     * writeJSONString itself
+     */
+    private static final ClassValue<JSONSerializer<Object>> SERIALIZERS = new ClassValue<JSONSerializer<Object>>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected JSONSerializer<Object> computeValue(Class<?> type) {
+            JSONSerializer<?> registered = REGISTERED.get(type);
+            if (registered != null) {
+                return (JSONSerializer<Object>) registered;
+            } else if (JSONStreamAware.class.isAssignableFrom(type) || JSONAware.class.isAssignableFrom(type)
+                    || Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type) || type.isArray()) {
+                return null;
+            } else if (type.isAnnotationPresent(JsonCodec.class)) {
+                Codec<Object> codec = (Codec<Object>) Codecs.get(type);
+                return codec::write;
+            }
+            return BeanSerializer.supports(type) ? BeanSerializer.of(type) : null;
+        }
+    };
+
     private JSONValue() {
     }
 
+    /**
+     * Write the instances of a class with the given serializer in
+     * writeJSONString, instead of the default way. Strings, numbers and
+     * booleans are always written by writeJSONString itself.
+     *
+     * @param <T>
+     * @param type - The class of the values, matched exactly.
+     * @param serializer - The serializer, or null to restore the default.
+     */
+    public static <T> void registerSerializer(Class<T> type, JSONSerializer<? super T> serializer) {
+        if (serializer == null) {
+            REGISTERED.remove(type);
+        } else {
+            REGISTERED.put(type, serializer);
+        }
+        SERIALIZERS.remove(type);
+    }
+
     /**
      * Parse JSON text into java object from the input source. Please use
      * parseWithException() if you don't want to ignore the exception.
@@ -64,8 +109,12 @@ public class JSONValue {
      * instead
      */
     public static Object parse(String s) {
-        StringReader in = new StringReader(s);
-        return parse(in);
+        try {
+            JSONParser parser = new JSONParser();
+            return parser.parse(s);
+        } catch (Exception e) {
+            return null;
+        }
     }
 
     /**
@@ -101,6 +150,14 @@ public class JSONValue {
      * implements both JSONStreamAware and (Map or List) with "this" as the
      * first parameter, use JSONObject.writeJSONString(Map, Writer) or
      * JSONArray.writeJSONString(List, Writer) instead.
+     * <p>
+     * Enum constants are written as JSON strings of their names, as JsonCodec
+     * codecs write them. Instances of a class registered with
+     * registerSerializer() are written by its serializer, those of a class
+     * annotated with JsonCodec by its codec. Records, and classes outside of the JDK that do not override
+     * toString(), are written as JSON objects of their fields, as JSONParser
+     * binds them, when reflection can open them. Anything else is written as
+     * its toString().
      *
      * @see org.json.simple.JSONObject#writeJSONString(Map, Writer)
      * @see org.json.simple.JSONArray#writeJSONString(List, Writer)
@@ -149,6 +206,22 @@ public class JSONValue {
             return;
         }
 
+        if (value instanceof Character) {
+            writeJSONString(value.toString(), out);
+            return;
+        }
+
+        if (value instanceof Enum) {
+            writeJSONString(((Enum<?>) value).name(), out);
+            return;
+        }
+
+        JSONSerializer<Object> serializer = SERIALIZERS.get(value.getClass());
+        if (serializer != null) {
+            serializer.writeJSONString(value, out);
+            return;
+        }
+
         if ((value instanceof JSONStreamAware)) {
             ((JSONStreamAware) value).writeJSONString(out);
             return;
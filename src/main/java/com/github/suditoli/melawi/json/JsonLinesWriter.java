@@ -0,0 +1,70 @@
+package com.github.suditoli.melawi.json;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer for newline-delimited JSON (JSON Lines, NDJSON). Every record is
+ * written with {@link JSONValue#writeJSONString(Object, Writer)} straight into
+ * one buffered output, followed by a newline. Please note that
+ * JsonLinesWriter is NOT thread-safe.
+ *
+ * @see com.github.suditoli.melawi.json.parser.JsonLinesReader
+ */
+public class JsonLinesWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer out;
+    private long recordCount;
+
+    /**
+     * @param out - Destination of the records, buffered unless it is a
+     * BufferedWriter already.
+     */
+    public JsonLinesWriter(Writer out) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, BUFFER_SIZE);
+    }
+
+    /**
+     * @param out - Destination of the records, encoded in UTF-8.
+     */
+    public JsonLinesWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Append a record.
+     *
+     * @param value - A JSON value, usually a Map or a JSONAware.
+     * @throws IOException
+     */
+    public void write(Object value) throws IOException {
+        JSONValue.writeJSONString(value, out);
+        out.write('\n');
+        recordCount++;
+    }
+
+    /**
+     * @return The number of records written so far.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
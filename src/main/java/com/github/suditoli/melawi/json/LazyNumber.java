@@ -0,0 +1,102 @@
+package com.github.suditoli.melawi.json;
+
+import java.math.BigInteger;
+
+/**
+ * A JSON number kept as its original text and converted only when a numeric
+ * value is asked for. Written back to JSON text, it produces the original
+ * digits unchanged.
+ *
+ * @see com.github.suditoli.melawi.json.parser.JSONParser#setLazyNumbers(boolean)
+ */
+public final class LazyNumber extends Number {
+
+    private static final long serialVersionUID = 4606180539506423712L;
+
+    private final String text;
+    private final boolean fractional;
+
+    /**
+     * @param text - A JSON number.
+     */
+    public LazyNumber(String text) {
+        this(text, text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0);
+    }
+
+    /**
+     * @param text - A JSON number.
+     * @param fractional - true if the number has a fraction or an exponent.
+     */
+    public LazyNumber(String text, boolean fractional) {
+        this.text = text;
+        this.fractional = fractional;
+    }
+
+    /**
+     * @return true if the number has a fraction or an exponent, and would be
+     * parsed as a Double rather than a Long.
+     */
+    public boolean isFractional() {
+        return fractional;
+    }
+
+    /**
+     * @return The number as the parser would have built it eagerly: a Double
+     * if it is fractional, a Long otherwise, or a BigInteger if it does not
+     * fit in a long.
+     */
+    public Number value() {
+        if (fractional) {
+            return Double.valueOf(text);
+        }
+        try {
+            return Long.valueOf(text);
+        } catch (NumberFormatException e) {
+            return new BigInteger(text);
+        }
+    }
+
+    @Override
+    public int intValue() {
+        return fractional ? (int) Double.parseDouble(text) : value().intValue();
+    }
+
+    @Override
+    public long longValue() {
+        return fractional ? (long) Double.parseDouble(text) : value().longValue();
+    }
+
+    @Override
+    public float floatValue() {
+        return Float.parseFloat(text);
+    }
+
+    @Override
+    public double doubleValue() {
+        return Double.parseDouble(text);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LazyNumber)) {
+            return false;
+        }
+        return value().equals(((LazyNumber) obj).value());
+    }
+
+    @Override
+    public int hashCode() {
+        return value().hashCode();
+    }
+
+    /**
+     * @return The original text of the number.
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+}
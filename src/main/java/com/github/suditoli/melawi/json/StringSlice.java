@@ -0,0 +1,197 @@
+package com.github.suditoli.melawi.json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * A JSON string value kept as a range of the parsed input, a String or bytes,
+ * and copied into a String only when {@link #toString()} is called. Written
+ * back to JSON text, it is escaped like a String without being copied.
+ * <p>
+ * Like String, a slice is only equal to another slice with the same
+ * characters; use {@link #contentEquals(CharSequence)} to compare it with
+ * other character sequences.
+ *
+ * @see com.github.suditoli.melawi.json.parser.JSONParser#setStringSlices(boolean)
+ */
+public final class StringSlice implements CharSequence, JSONAware, JSONStreamAware {
+
+    private final String chars;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+    private String string;
+    private int hash;
+
+    /**
+     * @param source
+     * @param start - Index of the first character.
+     * @param end - Index after the last character.
+     */
+    public StringSlice(String source, int start, int end) {
+        this(source, null, null, start, end);
+    }
+
+    /**
+     * @param source - Bytes holding only ASCII characters between start and
+     * end.
+     * @param start - Index of the first byte.
+     * @param end - Index after the last byte.
+     */
+    public StringSlice(byte[] source, int start, int end) {
+        this(null, source, null, start, end);
+    }
+
+    /**
+     * @param source - Buffer holding only ASCII characters between start and
+     * end; its position and limit are not used.
+     * @param start - Absolute index of the first byte.
+     * @param end - Absolute index after the last byte.
+     */
+    public StringSlice(ByteBuffer source, int start, int end) {
+        this(null, null, source, start, end);
+    }
+
+    private StringSlice(String chars, byte[] bytes, ByteBuffer buffer, int start, int end) {
+        if (start < 0 || end < start) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+        }
+        this.chars = chars;
+        this.bytes = bytes;
+        this.buffer = buffer;
+        this.offset = start;
+        this.length = end - start;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        if (chars != null) {
+            return chars.charAt(offset + index);
+        } else if (bytes != null) {
+            return (char) bytes[offset + index];
+        }
+        return (char) buffer.get(offset + index);
+    }
+
+    @Override
+    public StringSlice subSequence(int start, int end) {
+        if (end > length) {
+            throw new IndexOutOfBoundsException("end " + end + ", length " + length);
+        }
+        return new StringSlice(chars, bytes, buffer, offset + start, offset + end);
+    }
+
+    /**
+     * @param cs
+     * @return true if cs holds the same characters as this slice.
+     */
+    public boolean contentEquals(CharSequence cs) {
+        if (cs.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(i) != cs.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof StringSlice && contentEquals((StringSlice) obj);
+    }
+
+    /**
+     * @return The same hash code as the String of this slice.
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + charAt(i);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * @return The characters of this slice, copied into a String on the first
+     * call.
+     */
+    @Override
+    public String toString() {
+        String s = string;
+        if (s == null) {
+            if (chars != null) {
+                s = chars.substring(offset, offset + length);
+            } else {
+                char[] c = new char[length];
+                for (int i = 0; i < length; i++) {
+                    c[i] = charAt(i);
+                }
+                s = new String(c);
+            }
+            string = s;
+        }
+        return s;
+    }
+
+    @Override
+    public String toJSONString() {
+        StringWriter writer = new StringWriter(length + 2);
+        try {
+            writeJSONString(writer);
+        } catch (IOException e) {
+            // This should never happen for a StringWriter
+            throw new RuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write the slice as a JSON string, escaped as
+     * {@link JSONValue#escape(String)} does.
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        out.write('"');
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = charAt(i);
+            if (ch == '"' || ch == '\\' || ch == '/' || ch <= '\u001F' || (ch >= '\u007F' && ch <= '\u009F') || (ch >= '\u2000' && ch <= '\u20FF')) {
+                writeRun(out, run, i);
+                out.write(JSONValue.escape(String.valueOf(ch)));
+                run = i + 1;
+            }
+        }
+        writeRun(out, run, length);
+        out.write('"');
+    }
+
+    private void writeRun(Writer out, int start, int end) throws IOException {
+        if (chars != null) {
+            out.write(chars, offset + start, end - start);
+        } else {
+            for (int i = start; i < end; i++) {
+                out.write(charAt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.suditoli.melawi.json.codec;
+
+import com.github.suditoli.melawi.json.parser.JSONReader;
+import com.github.suditoli.melawi.json.parser.ParseException;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Reads and writes the JSON form of the instances of a type without
+ * reflection. Codecs are generated for the classes annotated with
+ * {@link JsonCodec}.
+ *
+ * @param <T>
+ */
+public interface Codec<T> {
+
+    /**
+     * Read the value at the cursor of the reader, leaving the cursor on the
+     * last token of the value.
+     *
+     * @param reader
+     * @return The value, null for JSON null.
+     * @throws IOException
+     * @throws ParseException
+     * @throws com.github.suditoli.melawi.json.JSONException - If the value
+     * does not fit the type.
+     */
+    T read(JSONReader reader) throws IOException, ParseException;
+
+    /**
+     * Write the JSON text of a value.
+     *
+     * @param value - The value, or null.
+     * @param out
+     * @throws IOException
+     */
+    void write(T value, Writer out) throws IOException;
+}
@@ -0,0 +1,104 @@
+package com.github.suditoli.melawi.json.codec;
+
+import com.github.suditoli.melawi.json.JSONException;
+import com.github.suditoli.melawi.json.JSONValue;
+import com.github.suditoli.melawi.json.parser.JSONReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Lookup of the generated codecs, and the conversions they share.
+ */
+public final class Codecs {
+
+    private static final ClassValue<Codec<?>> CODECS = new ClassValue<Codec<?>>() {
+        @Override
+        protected Codec<?> computeValue(Class<?> type) {
+            try {
+                Class<?> codecClass = Class.forName(codecName(type), true, type.getClassLoader());
+                Field instance = codecClass.getField("INSTANCE");
+                return (Codec<?>) instance.get(null);
+            } catch (ReflectiveOperationException e) {
+                throw new JSONException("No codec generated for " + type.getName() + ".", e);
+            }
+        }
+    };
+
+    private Codecs() {
+    }
+
+    /**
+     * @param <T>
+     * @param type - A class annotated with {@link JsonCodec}.
+     * @return The codec generated for the class.
+     * @throws JSONException - If there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Codec<T> get(Class<T> type) {
+        return (Codec<T>) CODECS.get(type);
+    }
+
+    /**
+     * @param type
+     * @return The binary name of the codec generated for a class: the name
+     * of the class, nested class names joined with '_', followed by Codec.
+     */
+    public static String codecName(Class<?> type) {
+        return type.getName().replace('$', '_') + "Codec";
+    }
+
+    /**
+     * @throws JSONException - If the current token of the reader is not the
+     * given one.
+     */
+    public static void expect(JSONReader reader, int token, String expected) {
+        if (reader.currentToken() != token) {
+            throw wrongToken(reader, expected);
+        }
+    }
+
+    public static BigDecimal readBigDecimal(JSONReader reader) {
+        Number number = reader.getNumber();
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+
+    public static BigInteger readBigInteger(JSONReader reader) {
+        Number number = reader.getNumber();
+        if (number instanceof BigInteger) {
+            return (BigInteger) number;
+        } else if (number instanceof Long) {
+            return BigInteger.valueOf(number.longValue());
+        }
+        return new BigDecimal(number.toString()).toBigInteger();
+    }
+
+    public static char readChar(JSONReader reader) {
+        String s = reader.getString();
+        if (s.length() != 1) {
+            throw wrongToken(reader, "a single character");
+        }
+        return s.charAt(0);
+    }
+
+    public static <E extends Enum<E>> E readEnum(JSONReader reader, Class<E> type) {
+        try {
+            return Enum.valueOf(type, reader.getString());
+        } catch (IllegalArgumentException e) {
+            throw wrongToken(reader, "a constant of " + type.getName());
+        }
+    }
+
+    /**
+     * Write the name of an enum constant as a JSON string, or null.
+     */
+    public static void writeEnum(Enum<?> value, Writer out) throws IOException {
+        JSONValue.writeJSONString(value == null ? null : value.name(), out);
+    }
+
+    private static JSONException wrongToken(JSONReader reader, String expected) {
+        return new JSONException("The current token at position " + reader.getPosition() + " is not " + expected + ".");
+    }
+}
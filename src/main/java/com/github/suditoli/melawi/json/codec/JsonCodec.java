@@ -0,0 +1,35 @@
+package com.github.suditoli.melawi.json.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate a {@link Codec} for a class or a record at compile time. The
+ * codec of a class Order is the class OrderCodec in the same package; for a
+ * nested class Outer.Line, it is Outer_LineCodec. Its INSTANCE field holds
+ * the codec.
+ * <p>
+ * The codec reads and writes the non-static, non-transient fields of the
+ * class, inherited ones included; private fields are accessed through their
+ * getter and setter. A class needs a constructor without parameters that is
+ * not private; a record is created with its canonical constructor. Fields
+ * may be primitives and their wrappers, String, BigDecimal, BigInteger,
+ * enums, other classes annotated with JsonCodec, and lists, sets and maps
+ * with String keys of those. Fields of other types are read with
+ * {@link com.github.suditoli.melawi.json.parser.JSONReader#readValue(Class)}
+ * and written with
+ * {@link com.github.suditoli.melawi.json.JSONValue#writeJSONString(Object, java.io.Writer)}.
+ * <p>
+ * The processor is registered in the jar of the library, so it runs when the
+ * library is on the compile class path.
+ *
+ * @see Codecs#get(Class)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface JsonCodec {
+}
@@ -0,0 +1,677 @@
+package com.github.suditoli.melawi.json.codec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the codecs of the classes annotated with {@link JsonCodec}. The
+ * generated code reads through the public API of
+ * {@link com.github.suditoli.melawi.json.parser.JSONReader}, matching field
+ * names by length and first character, and writes the field names as
+ * constants.
+ */
+public class JsonCodecProcessor extends AbstractProcessor {
+
+    private static final int BOOLEAN = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int SHORT = 3;
+    private static final int BYTE = 4;
+    private static final int DOUBLE = 5;
+    private static final int FLOAT = 6;
+    private static final int CHAR = 7;
+    private static final int STRING = 8;
+    private static final int BIG_DECIMAL = 9;
+    private static final int BIG_INTEGER = 10;
+    private static final int ENUM = 11;
+    private static final int CODEC = 12;
+    private static final int COLLECTION = 13;
+    private static final int MAP = 14;
+    private static final int OTHER = 15;
+
+    private static final String[] BOXES = {
+        "java.lang.Boolean", "java.lang.Integer", "java.lang.Long", "java.lang.Short",
+        "java.lang.Byte", "java.lang.Double", "java.lang.Float", "java.lang.Character"
+    };
+
+    private static final String[] GETTERS = {
+        "reader.getBoolean()", "reader.getInt()", "reader.getLong()", "reader.getNumber().shortValue()",
+        "reader.getNumber().byteValue()", "reader.getDouble()", "reader.getNumber().floatValue()",
+        "Codecs.readChar(reader)", "reader.getString()", "Codecs.readBigDecimal(reader)",
+        "Codecs.readBigInteger(reader)"
+    };
+
+    private Types types;
+    private Elements elements;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(JsonCodec.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        types = processingEnv.getTypeUtils();
+        elements = processingEnv.getElementUtils();
+        for (Element element : round.getElementsAnnotatedWith(JsonCodec.class)) {
+            boolean record = element.getKind().name().equals("RECORD");
+            if (element.getKind() != ElementKind.CLASS && !record) {
+                error("@JsonCodec applies to classes and records", element);
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            try {
+                Generator generator = new Generator(type, record);
+                if (generator.properties != null) {
+                    generator.generate();
+                }
+            } catch (IOException e) {
+                error("Cannot write the codec: " + e.getMessage(), element);
+            }
+        }
+        return true;
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String packageName(Element element) {
+        while (!(element instanceof PackageElement)) {
+            element = element.getEnclosingElement();
+        }
+        return ((PackageElement) element).getQualifiedName().toString();
+    }
+
+    private static boolean accessible(Element element, String pkg) {
+        Set<Modifier> modifiers = element.getModifiers();
+        return !modifiers.contains(Modifier.PRIVATE)
+                && (modifiers.contains(Modifier.PUBLIC) || packageName(element).equals(pkg));
+    }
+
+    private int kind(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return BOOLEAN;
+            case INT:
+                return INT;
+            case LONG:
+                return LONG;
+            case SHORT:
+                return SHORT;
+            case BYTE:
+                return BYTE;
+            case DOUBLE:
+                return DOUBLE;
+            case FLOAT:
+                return FLOAT;
+            case CHAR:
+                return CHAR;
+            case DECLARED:
+                break;
+            default:
+                return OTHER;
+        }
+        TypeElement element = (TypeElement) types.asElement(type);
+        String name = element.getQualifiedName().toString();
+        for (int i = 0; i < BOXES.length; i++) {
+            if (BOXES[i].equals(name)) {
+                return i;
+            }
+        }
+        if (name.equals("java.lang.String")) {
+            return STRING;
+        } else if (name.equals("java.math.BigDecimal")) {
+            return BIG_DECIMAL;
+        } else if (name.equals("java.math.BigInteger")) {
+            return BIG_INTEGER;
+        } else if (element.getKind() == ElementKind.ENUM) {
+            return ENUM;
+        } else if (element.getAnnotation(JsonCodec.class) != null) {
+            return CODEC;
+        }
+        List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+        TypeMirror erasure = types.erasure(type);
+        if (arguments.size() == 1 && types.isAssignable(erasure, erasure("java.util.Collection"))) {
+            return COLLECTION;
+        } else if (arguments.size() == 2 && types.isAssignable(erasure, erasure("java.util.Map"))
+                && types.isSameType(bound(arguments.get(0)), elements.getTypeElement("java.lang.String").asType())) {
+            return MAP;
+        }
+        return OTHER;
+    }
+
+    private TypeMirror erasure(String name) {
+        return types.erasure(elements.getTypeElement(name).asType());
+    }
+
+    /**
+     * @return The upper bound of a wildcard, or the type itself.
+     */
+    private TypeMirror bound(TypeMirror type) {
+        if (type.getKind() == TypeKind.WILDCARD) {
+            TypeMirror bound = ((WildcardType) type).getExtendsBound();
+            return bound == null ? elements.getTypeElement("java.lang.Object").asType() : bound;
+        }
+        return type;
+    }
+
+    private static String literal(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static final class Property {
+
+        final String name;
+        final TypeMirror type;
+        final String get;
+        final String set;
+
+        Property(String name, TypeMirror type, String get, String set) {
+            this.name = name;
+            this.type = type;
+            this.get = get;
+            this.set = set;
+        }
+    }
+
+    private final class Generator {
+
+        final TypeElement type;
+        final boolean record;
+        final String pkg;
+        final String typeName;
+        final String codecName;
+        final List<Property> properties;
+        final Map<String, Integer> helpers = new LinkedHashMap<>();
+        final List<TypeMirror> helperTypes = new ArrayList<>();
+        final StringBuilder out = new StringBuilder();
+
+        Generator(TypeElement type, boolean record) {
+            this.type = type;
+            this.record = record;
+            pkg = packageName(type);
+            typeName = type.getQualifiedName().toString();
+            String flat = pkg.isEmpty() ? typeName : typeName.substring(pkg.length() + 1);
+            codecName = flat.replace('.', '_') + "Codec";
+            properties = check() ? (record ? components() : fields()) : null;
+        }
+
+        private boolean check() {
+            if (!type.getTypeParameters().isEmpty()) {
+                error("@JsonCodec does not apply to generic classes", type);
+                return false;
+            }
+            for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+                if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                    error("@JsonCodec does not apply to private classes", type);
+                    return false;
+                }
+            }
+            if (record) {
+                return true;
+            }
+            if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+                error("@JsonCodec does not apply to abstract classes", type);
+                return false;
+            } else if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+                error("@JsonCodec does not apply to inner classes, make the class static", type);
+                return false;
+            }
+            for (Element e : type.getEnclosedElements()) {
+                if (e.getKind() == ElementKind.CONSTRUCTOR && ((ExecutableElement) e).getParameters().isEmpty()
+                        && !e.getModifiers().contains(Modifier.PRIVATE)) {
+                    return true;
+                }
+            }
+            error("@JsonCodec needs a constructor without parameters that is not private", type);
+            return false;
+        }
+
+        private List<Property> components() {
+            List<Property> list = new ArrayList<>();
+            for (Element e : type.getEnclosedElements()) {
+                if (e.getKind().name().equals("RECORD_COMPONENT")) {
+                    String name = e.getSimpleName().toString();
+                    list.add(new Property(name, e.asType(), name + "()", null));
+                }
+            }
+            return list;
+        }
+
+        private List<Property> fields() {
+            List<Property> list = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            boolean ok = true;
+            // Inherited fields come first; a field hides those of its superclasses.
+            for (TypeElement t = type; t != null; t = superclass(t)) {
+                List<Property> own = new ArrayList<>();
+                for (Element e : t.getEnclosedElements()) {
+                    Set<Modifier> modifiers = e.getModifiers();
+                    if (e.getKind() != ElementKind.FIELD || modifiers.contains(Modifier.STATIC)
+                            || modifiers.contains(Modifier.TRANSIENT)) {
+                        continue;
+                    }
+                    String name = e.getSimpleName().toString();
+                    if (!names.add(name)) {
+                        continue;
+                    }
+                    TypeMirror fieldType = e.asType();
+                    if (accessible(e, pkg) && !modifiers.contains(Modifier.FINAL)) {
+                        own.add(new Property(name, fieldType, name, null));
+                        continue;
+                    }
+                    String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                    String getter = method(fieldType.getKind() == TypeKind.BOOLEAN ? "is" + suffix : "get" + suffix, null);
+                    if (getter == null) {
+                        getter = method("get" + suffix, null);
+                    }
+                    String setter = method("set" + suffix, fieldType);
+                    if (getter == null || setter == null) {
+                        error("Field " + name + " needs a getter and a setter, or access from package " + pkg, e);
+                        ok = false;
+                    } else {
+                        own.add(new Property(name, fieldType, getter + "()", setter));
+                    }
+                }
+                list.addAll(0, own);
+            }
+            return ok ? list : null;
+        }
+
+        private TypeElement superclass(TypeElement t) {
+            TypeMirror superclass = t.getSuperclass();
+            if (superclass.getKind() != TypeKind.DECLARED) {
+                return null;
+            }
+            TypeElement element = (TypeElement) types.asElement(superclass);
+            return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+        }
+
+        /**
+         * @return The name of an accessible method of the class, without
+         * parameters when parameter is null, with one parameter of the given
+         * type otherwise.
+         */
+        private String method(String name, TypeMirror parameter) {
+            for (TypeElement t = type; t != null; t = superclass(t)) {
+                for (Element e : t.getEnclosedElements()) {
+                    if (e.getKind() != ElementKind.METHOD || !e.getSimpleName().contentEquals(name)
+                            || e.getModifiers().contains(Modifier.STATIC) || !accessible(e, pkg)) {
+                        continue;
+                    }
+                    List<? extends VariableElement> parameters = ((ExecutableElement) e).getParameters();
+                    if (parameter == null ? parameters.isEmpty()
+                            : parameters.size() == 1 && types.isSameType(parameters.get(0).asType(), parameter)) {
+                        return name;
+                    }
+                }
+            }
+            return null;
+        }
+
+        void generate() throws IOException {
+            if (!pkg.isEmpty()) {
+                line(0, "package " + pkg + ";");
+                line(0, "");
+            }
+            line(0, "import com.github.suditoli.melawi.json.JSONValue;");
+            line(0, "import com.github.suditoli.melawi.json.codec.Codec;");
+            line(0, "import com.github.suditoli.melawi.json.codec.Codecs;");
+            line(0, "import com.github.suditoli.melawi.json.parser.JSONReader;");
+            line(0, "import com.github.suditoli.melawi.json.parser.ParseException;");
+            line(0, "import java.io.IOException;");
+            line(0, "import java.io.Writer;");
+            line(0, "");
+            line(0, "// Generated by " + JsonCodecProcessor.class.getName() + " from " + typeName + ".");
+            line(0, "@SuppressWarnings(\"unchecked\")");
+            line(0, "public final class " + codecName + " implements Codec<" + typeName + "> {");
+            line(0, "");
+            line(1, "public static final " + codecName + " INSTANCE = new " + codecName + "();");
+            line(0, "");
+            line(1, "private " + codecName + "() {");
+            line(1, "}");
+            read();
+            write();
+            // Helpers may add further helpers for nested collections.
+            for (int i = 0; i < helperTypes.size(); i++) {
+                helper(i);
+            }
+            line(0, "}");
+            String name = pkg.isEmpty() ? codecName : pkg + "." + codecName;
+            try (Writer writer = processingEnv.getFiler().createSourceFile(name, type).openWriter()) {
+                writer.write(out.toString());
+            }
+        }
+
+        private void line(int indent, String s) {
+            for (int i = 0; i < indent; i++) {
+                out.append("    ");
+            }
+            out.append(s).append('\n');
+        }
+
+        private void read() {
+            line(0, "");
+            line(1, "@Override");
+            line(1, "public " + typeName + " read(JSONReader reader) throws IOException, ParseException {");
+            line(2, "if (reader.currentToken() == JSONReader.VALUE_NULL) {");
+            line(3, "return null;");
+            line(2, "}");
+            line(2, "Codecs.expect(reader, JSONReader.START_OBJECT, \"an object\");");
+            if (record) {
+                for (int i = 0; i < properties.size(); i++) {
+                    TypeMirror t = properties.get(i).type;
+                    String initial = !t.getKind().isPrimitive() ? "null" : t.getKind() == TypeKind.BOOLEAN ? "false" : "0";
+                    line(2, t + " p" + i + " = " + initial + ";");
+                }
+            } else {
+                line(2, typeName + " value = new " + typeName + "();");
+            }
+            line(2, "while (reader.nextToken() == JSONReader.FIELD_NAME) {");
+            line(3, "String name = reader.getString();");
+            line(3, "reader.nextToken();");
+            // Group the names by length, then by first character.
+            Map<Integer, Map<Character, List<Integer>>> groups = new TreeMap<>();
+            for (int i = 0; i < properties.size(); i++) {
+                String name = properties.get(i).name;
+                groups.computeIfAbsent(name.length(), k -> new TreeMap<>())
+                        .computeIfAbsent(name.charAt(0), k -> new ArrayList<>()).add(i);
+            }
+            if (!groups.isEmpty()) {
+                line(3, "switch (name.length()) {");
+                for (Map.Entry<Integer, Map<Character, List<Integer>>> length : groups.entrySet()) {
+                    line(4, "case " + length.getKey() + ":");
+                    Map<Character, List<Integer>> byChar = length.getValue();
+                    if (byChar.size() == 1) {
+                        match(5, byChar.values().iterator().next());
+                    } else {
+                        line(5, "switch (name.charAt(0)) {");
+                        for (Map.Entry<Character, List<Integer>> c : byChar.entrySet()) {
+                            line(6, "case " + literal(String.valueOf(c.getKey())).replace('"', '\'') + ":");
+                            match(7, c.getValue());
+                            line(7, "break;");
+                        }
+                        line(5, "}");
+                    }
+                    line(5, "break;");
+                }
+                line(3, "}");
+            }
+            line(3, "reader.skipChildren();");
+            line(2, "}");
+            if (record) {
+                StringBuilder args = new StringBuilder();
+                for (int i = 0; i < properties.size(); i++) {
+                    args.append(i == 0 ? "p" : ", p").append(i);
+                }
+                line(2, "return new " + typeName + "(" + args + ");");
+            } else {
+                line(2, "return value;");
+            }
+            line(1, "}");
+        }
+
+        private void match(int indent, List<Integer> indexes) {
+            for (int i : indexes) {
+                Property p = properties.get(i);
+                line(indent, "if (name.equals(" + literal(p.name) + ")) {");
+                String target = record ? "p" + i + " = " : p.set == null ? "value." + p.name + " = " : null;
+                String assignment = target != null ? target + readExpression(p.type) + ";"
+                        : "value." + p.set + "(" + readExpression(p.type) + ");";
+                if (p.type.getKind().isPrimitive()) {
+                    line(indent + 1, "if (reader.currentToken() != JSONReader.VALUE_NULL) {");
+                    line(indent + 2, assignment);
+                    line(indent + 1, "}");
+                } else {
+                    line(indent + 1, assignment);
+                }
+                line(indent + 1, "continue;");
+                line(indent, "}");
+            }
+        }
+
+        /**
+         * @return An expression reading the current value as the type. It is
+         * null for JSON null, unless the type is primitive.
+         */
+        private String readExpression(TypeMirror t) {
+            int kind = kind(t);
+            String expression;
+            switch (kind) {
+                case ENUM:
+                    expression = "Codecs.readEnum(reader, " + types.erasure(t) + ".class)";
+                    break;
+                case CODEC:
+                    return codecOf(t) + ".INSTANCE.read(reader)";
+                case COLLECTION:
+                case MAP:
+                    return "read" + helper(t) + "(reader)";
+                case OTHER:
+                    // a generic type, or an array of one, has no class literal
+                    TypeMirror erasure = types.erasure(t);
+                    if (!types.isSameType(t, erasure)) {
+                        return "(" + t + ") reader.readValue(" + erasure + ".class)";
+                    }
+                    return "reader.readValue(" + t + ".class)";
+                default:
+                    expression = GETTERS[kind];
+            }
+            return t.getKind().isPrimitive() ? expression
+                    : "reader.currentToken() == JSONReader.VALUE_NULL ? null : " + expression;
+        }
+
+        private void write() {
+            line(0, "");
+            line(1, "@Override");
+            line(1, "public void write(" + typeName + " value, Writer out) throws IOException {");
+            line(2, "if (value == null) {");
+            line(3, "out.write(\"null\");");
+            line(3, "return;");
+            line(2, "}");
+            for (int i = 0; i < properties.size(); i++) {
+                Property p = properties.get(i);
+                line(2, "out.write(" + literal((i == 0 ? "{\"" : ",\"") + p.name + "\":") + ");");
+                line(2, writeStatement(p.type, "value." + p.get));
+            }
+            line(2, properties.isEmpty() ? "out.write(\"{}\");" : "out.write('}');");
+            line(1, "}");
+        }
+
+        private String writeStatement(TypeMirror t, String v) {
+            switch (kind(t)) {
+                case BOOLEAN:
+                    if (t.getKind().isPrimitive()) {
+                        return "out.write(" + v + " ? \"true\" : \"false\");";
+                    }
+                    break;
+                case INT:
+                case LONG:
+                case SHORT:
+                case BYTE:
+                    if (t.getKind().isPrimitive()) {
+                        return "out.write(String.valueOf(" + v + "));";
+                    }
+                    break;
+                case CHAR:
+                    if (t.getKind().isPrimitive()) {
+                        return "JSONValue.writeJSONString(String.valueOf(" + v + "), out);";
+                    }
+                    return "JSONValue.writeJSONString(java.util.Objects.toString(" + v + ", null), out);";
+                case ENUM:
+                    return "Codecs.writeEnum(" + v + ", out);";
+                case CODEC:
+                    return codecOf(t) + ".INSTANCE.write(" + v + ", out);";
+                case COLLECTION:
+                case MAP:
+                    return "write" + helper(t) + "(" + v + ", out);";
+                default:
+            }
+            return "JSONValue.writeJSONString(" + v + ", out);";
+        }
+
+        private String codecOf(TypeMirror t) {
+            TypeElement element = (TypeElement) types.asElement(t);
+            String p = packageName(element);
+            String name = element.getQualifiedName().toString();
+            String flat = p.isEmpty() ? name : name.substring(p.length() + 1);
+            return (p.isEmpty() ? "" : p + ".") + flat.replace('.', '_') + "Codec";
+        }
+
+        /**
+         * @return The number of the helper methods reading and writing a
+         * collection or map type, which are generated at the end.
+         */
+        private int helper(TypeMirror t) {
+            String key = declaration(t, false);
+            Integer index = helpers.get(key);
+            if (index == null) {
+                index = helpers.size();
+                helpers.put(key, index);
+                helperTypes.add(t);
+            }
+            return index;
+        }
+
+        /**
+         * @return The collection or map type with the bounds of its wildcard
+         * arguments, so that it can be built and filled, or with wildcards
+         * for writing, so that it accepts every such collection or map.
+         */
+        private String declaration(TypeMirror t, boolean wildcards) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) t).getTypeArguments();
+            StringBuilder sb = new StringBuilder(types.erasure(t).toString()).append('<');
+            for (int i = 0; i < arguments.size(); i++) {
+                sb.append(i == 0 ? "" : ", ").append(wildcards ? "? extends " : "").append(bound(arguments.get(i)));
+            }
+            return sb.append('>').toString();
+        }
+
+        private void helper(int index) {
+            TypeMirror t = helperTypes.get(index);
+            String declaration = declaration(t, false);
+            boolean map = kind(t) == MAP;
+            List<? extends TypeMirror> arguments = ((DeclaredType) t).getTypeArguments();
+            TypeMirror element = bound(arguments.get(map ? 1 : 0));
+            line(0, "");
+            line(1, "private static " + declaration + " read" + index
+                    + "(JSONReader reader) throws IOException, ParseException {");
+            line(2, "if (reader.currentToken() == JSONReader.VALUE_NULL) {");
+            line(3, "return null;");
+            line(2, "}");
+            if (map) {
+                line(2, "Codecs.expect(reader, JSONReader.START_OBJECT, \"an object\");");
+                line(2, declaration + " values = new " + implementation(t) + "<>();");
+                line(2, "while (reader.nextToken() == JSONReader.FIELD_NAME) {");
+                line(3, "String key = reader.getString();");
+                line(3, "reader.nextToken();");
+                line(3, "values.put(key, " + readExpression(element) + ");");
+            } else {
+                line(2, "Codecs.expect(reader, JSONReader.START_ARRAY, \"an array\");");
+                line(2, declaration + " values = new " + implementation(t) + "<>();");
+                line(2, "while (reader.nextToken() != JSONReader.END_ARRAY) {");
+                line(3, "values.add(" + readExpression(element) + ");");
+            }
+            line(2, "}");
+            line(2, "return values;");
+            line(1, "}");
+            line(0, "");
+            line(1, "private static void write" + index + "(" + declaration(t, true) + " values, Writer out) throws IOException {");
+            line(2, "if (values == null) {");
+            line(3, "out.write(\"null\");");
+            line(3, "return;");
+            line(2, "}");
+            line(2, map ? "out.write('{');" : "out.write('[');");
+            line(2, "boolean first = true;");
+            if (map) {
+                line(2, "for (java.util.Map.Entry<? extends String, ? extends " + element + "> entry : values.entrySet()) {");
+            } else {
+                line(2, "for (" + element + " element : values) {");
+            }
+            line(3, "if (first) {");
+            line(4, "first = false;");
+            line(3, "} else {");
+            line(4, "out.write(',');");
+            line(3, "}");
+            if (map) {
+                line(3, "JSONValue.writeJSONString(entry.getKey(), out);");
+                line(3, "out.write(':');");
+                line(3, writeStatement(element, "entry.getValue()"));
+            } else {
+                line(3, writeStatement(element, "element"));
+            }
+            line(2, "}");
+            line(2, map ? "out.write('}');" : "out.write(']');");
+            line(1, "}");
+        }
+
+        /**
+         * @return The class instantiated for a collection or map type.
+         */
+        private String implementation(TypeMirror t) {
+            boolean map = kind(t) == MAP;
+            TypeElement element = (TypeElement) types.asElement(t);
+            String name = element.getQualifiedName().toString();
+            if (element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+                return name;
+            }
+            switch (name) {
+                case "java.util.Set":
+                    return "java.util.LinkedHashSet";
+                case "java.util.SortedSet":
+                case "java.util.NavigableSet":
+                    return "java.util.TreeSet";
+                case "java.util.Queue":
+                case "java.util.Deque":
+                    return "java.util.ArrayDeque";
+                case "java.util.SortedMap":
+                case "java.util.NavigableMap":
+                    return "java.util.TreeMap";
+                default:
+                    return map ? "java.util.LinkedHashMap" : "java.util.ArrayList";
+            }
+        }
+    }
+}
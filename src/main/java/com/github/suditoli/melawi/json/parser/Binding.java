@@ -0,0 +1,615 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.JSONException;
+import com.github.suditoli.melawi.json.JSONObject;
+import com.github.suditoli.melawi.json.LazyNumber;
+import com.github.suditoli.melawi.json.codec.Codec;
+import com.github.suditoli.melawi.json.codec.Codecs;
+import com.github.suditoli.melawi.json.codec.JsonCodec;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Reads a JSON value straight into an instance of a Java type from the tokens
+ * of a {@link JSONReader}, without building JSONObject and JSONArray
+ * instances first.
+ * <p>
+ * The binding of a class is built once with reflection and cached. Classes
+ * are bound through their non-static, non-transient fields, including the
+ * inherited ones, and created with their constructor without parameters;
+ * records are bound through their components and canonical constructor.
+ * Collections, maps and arrays take the type of their elements from the
+ * generic type of the field. Unknown object entries are skipped. Classes
+ * annotated with {@link JsonCodec} are read by their generated codec.
+ *
+ * @see JSONReader#readValue(Class)
+ */
+abstract class Binding {
+
+    private static final int BOOLEAN = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int SHORT = 3;
+    private static final int BYTE = 4;
+    private static final int DOUBLE = 5;
+    private static final int FLOAT = 6;
+    private static final int CHAR = 7;
+    private static final int STRING = 8;
+    private static final int NUMBER = 9;
+    private static final int BIG_DECIMAL = 10;
+    private static final int BIG_INTEGER = 11;
+
+    private static final Map<Class<?>, Integer> SCALARS = new HashMap<>();
+
+    static {
+        scalar(BOOLEAN, boolean.class, Boolean.class);
+        scalar(INT, int.class, Integer.class);
+        scalar(LONG, long.class, Long.class);
+        scalar(SHORT, short.class, Short.class);
+        scalar(BYTE, byte.class, Byte.class);
+        scalar(DOUBLE, double.class, Double.class);
+        scalar(FLOAT, float.class, Float.class);
+        scalar(CHAR, char.class, Character.class);
+        scalar(STRING, String.class, CharSequence.class);
+        scalar(NUMBER, Number.class, Number.class);
+        scalar(BIG_DECIMAL, BigDecimal.class, BigDecimal.class);
+        scalar(BIG_INTEGER, BigInteger.class, BigInteger.class);
+    }
+
+    private static void scalar(int kind, Class<?> type, Class<?> boxed) {
+        SCALARS.put(type, kind);
+        SCALARS.put(boxed, kind);
+    }
+
+    /**
+     * Class.isRecord and Class.getRecordComponents, null before Java 16
+     */
+    private static final Method IS_RECORD = classMethod("isRecord");
+    private static final Method GET_RECORD_COMPONENTS = classMethod("getRecordComponents");
+
+    private static Method classMethod(String name) {
+        try {
+            return Class.class.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>() {
+        @Override
+        protected Binding computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+
+    /**
+     * The number factory while binding with the default numbers: fractional
+     * numbers keep their text, so that BigDecimal targets get the exact
+     * digits rather than those of a double; integers are exact already.
+     * {@link JSONReader#readValue()} turns them back into Double.
+     */
+    static final NumberFactory EXACT_FRACTIONS = (chars, off, len, fractional)
+            -> fractional ? new LazyNumber(new String(chars, off, len), true) : null;
+
+    /**
+     * Binding of Object: JSONObject, JSONArray, String, Number, Boolean or
+     * null, as {@link JSONReader#readValue()} builds them.
+     */
+    private static final Binding ANY = new Binding() {
+        @Override
+        Object read(JSONReader reader) throws IOException, ParseException {
+            return reader.readValue();
+        }
+    };
+
+    /**
+     * Reads the value starting at the current token of the reader, leaving
+     * the cursor on the last token of the value.
+     *
+     * @return The value, or null for JSON null.
+     * @throws IOException
+     * @throws ParseException
+     * @throws JSONException - If the value does not fit the type.
+     */
+    abstract Object read(JSONReader reader) throws IOException, ParseException;
+
+    /**
+     * @param type - A class, or a parameterized collection or map type.
+     * @return The binding of the type, cached for classes.
+     */
+    static Binding of(Type type) {
+        if (type instanceof Class) {
+            return BINDINGS.get((Class<?>) type);
+        } else if (type instanceof ParameterizedType) {
+            Class<?> raw = (Class<?>) ((ParameterizedType) type).getRawType();
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (Collection.class.isAssignableFrom(raw)) {
+                return new CollectionBinding(raw, arguments[0]);
+            } else if (Map.class.isAssignableFrom(raw)) {
+                if (!rawClass(bound(arguments[0])).isAssignableFrom(String.class)) {
+                    throw new JSONException("Cannot bind " + type.getTypeName() + ": its keys are not strings.");
+                }
+                return new MapBinding(raw, arguments[1]);
+            }
+            return BINDINGS.get(raw);
+        } else if (type instanceof GenericArrayType) {
+            Type component = ((GenericArrayType) type).getGenericComponentType();
+            return new ArrayBinding(rawClass(component), component);
+        } else if (type instanceof WildcardType || type instanceof TypeVariable) {
+            return of(bound(type));
+        }
+        return ANY;
+    }
+
+    /**
+     * @return The upper bound of a wildcard or a type variable, or the type.
+     */
+    private static Type bound(Type type) {
+        if (type instanceof WildcardType) {
+            return bound(((WildcardType) type).getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable) {
+            return bound(((TypeVariable<?>) type).getBounds()[0]);
+        }
+        return type;
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+
+    private static Binding create(Class<?> type) {
+        Integer kind = SCALARS.get(type);
+        if (kind != null) {
+            return new ScalarBinding(kind);
+        } else if (type == Object.class) {
+            return ANY;
+        } else if (type.isEnum()) {
+            return new EnumBinding(type);
+        } else if (type.isArray()) {
+            return new ArrayBinding(type.getComponentType(), type.getComponentType());
+        } else if (Collection.class.isAssignableFrom(type)) {
+            return new CollectionBinding(type, Object.class);
+        } else if (Map.class.isAssignableFrom(type)) {
+            return new MapBinding(type, Object.class);
+        } else if (type.isAnnotationPresent(JsonCodec.class)) {
+            return new CodecBinding(Codecs.get(type));
+        } else if (isRecord(type)) {
+            return new RecordBinding(type);
+        } else if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isPrimitive()) {
+            throw new JSONException("Cannot bind " + type.getName() + ": it cannot be instantiated.");
+        }
+        return new BeanBinding(type);
+    }
+
+    private static boolean isRecord(Class<?> type) {
+        try {
+            return IS_RECORD != null && (Boolean) IS_RECORD.invoke(type);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            return false;
+        }
+    }
+
+    private static JSONException bindingFailure(Class<?> type, Throwable cause) {
+        if (cause instanceof InvocationTargetException) {
+            cause = cause.getCause();
+        }
+        return new JSONException("Cannot bind " + type.getName() + ": " + cause, cause);
+    }
+
+    /**
+     * @return The constructor of the type with the given parameters, made
+     * accessible.
+     */
+    private static Constructor<?> constructor(Class<?> type, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            throw bindingFailure(type, e);
+        }
+    }
+
+    /**
+     * @return The creator of the collections or maps assigned to a type: the
+     * usual implementation of an interface, or the constructor of a class.
+     */
+    private static Supplier<Object> factory(Class<?> type) {
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            Constructor<?> constructor = constructor(type);
+            return () -> {
+                try {
+                    return constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw bindingFailure(type, e);
+                }
+            };
+        } else if (type.isAssignableFrom(ArrayList.class)) {
+            return ArrayList::new;
+        } else if (type.isAssignableFrom(LinkedHashSet.class)) {
+            return LinkedHashSet::new;
+        } else if (type.isAssignableFrom(TreeSet.class)) {
+            return TreeSet::new;
+        } else if (type.isAssignableFrom(ArrayDeque.class)) {
+            return ArrayDeque::new;
+        } else if (type.isAssignableFrom(JSONObject.class)) {
+            return JSONObject::new;
+        } else if (type.isAssignableFrom(TreeMap.class)) {
+            return TreeMap::new;
+        }
+        throw new JSONException("Cannot bind " + type.getName() + ": it cannot be instantiated.");
+    }
+
+    private static final class ScalarBinding extends Binding {
+
+        private final int kind;
+
+        ScalarBinding(int kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        Object read(JSONReader reader) throws IOException, ParseException {
+            if (reader.currentToken() == JSONReader.VALUE_NULL) {
+                return null;
+            }
+            switch (kind) {
+                case BOOLEAN:
+                    return reader.getBoolean();
+                case INT:
+                    return reader.getInt();
+                case LONG:
+                    return reader.getLong();
+                case SHORT:
+                    return reader.getNumber().shortValue();
+                case BYTE:
+                    return reader.getNumber().byteValue();
+                case DOUBLE:
+                    return reader.getDouble();
+                case FLOAT:
+                    return reader.getNumber().floatValue();
+                case CHAR:
+                    return Codecs.readChar(reader);
+                case STRING:
+                    return reader.getString();
+                case NUMBER:
+                    Number number = reader.getNumber();
+                    return reader.exactFractions() && number instanceof LazyNumber ? ((LazyNumber) number).value() : number;
+                case BIG_DECIMAL:
+                    return Codecs.readBigDecimal(reader);
+                default:
+                    return Codecs.readBigInteger(reader);
+            }
+        }
+    }
+
+    private static final class CodecBinding extends Binding {
+
+        private final Codec<?> codec;
+
+        CodecBinding(Codec<?> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        Object read(JSONReader reader) throws IOException, ParseException {
+            return codec.read(reader);
+        }
+    }
+
+    private static final class EnumBinding extends Binding {
+
+        private final Class type;
+
+        EnumBinding(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object read(JSONReader reader) throws IOException, ParseException {
+            if (reader.currentToken() == JSONReader.VALUE_NULL) {
+                return null;
+            }
+            return Codecs.readEnum(reader, type);
+        }
+    }
+
+    private static final class ArrayBinding extends Binding {
+
+        private final Class<?> componentType;
+        private final Type elementType;
+        private Binding elements;
+
+        ArrayBinding(Class<?> componentType, Type elementType) {
+            this.componentType = componentType;
+            this.elementType = elementType;
+        }
+
+        @Override
+        Object read(JSONReader reader) throws IOException, ParseException {
+            if (reader.currentToken() == JSONReader.VALUE_NULL) {
+                return null;
+            } else if (reader.currentToken() != JSONReader.START_ARRAY) {
+                throw reader.wrongToken("an array");
+            }
+            if (elements == null) {
+                elements = of(elementType);
+            }
+            List<Object> values = new ArrayList<>();
+            while (reader.nextToken() != JSONReader.END_ARRAY) {
+                values.add(elements.read(reader));
+            }
+            Object array = Array.newInstance(componentType, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Object value = values.get(i);
+                if (value != null || !componentType.isPrimitive()) {
+                    Array.set(array, i, value);
+                }
+            }
+            return array;
+        }
+    }
+
+    private static final class CollectionBinding extends Binding {
+
+        private final Supplier<Object> factory;
+        private final Type elementType;
+        private Binding elements;
+
+        CollectionBinding(Class<?> type, Type elementType) {
+            this.factory = factory(type);
+            this.elementType = elementType;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object read(JSONReader reader) throws IOException, ParseException {
+            if (reader.currentToken() == JSONReader.VALUE_NULL) {
+                return null;
+            } else if (reader.currentToken() != JSONReader.START_ARRAY) {
+                throw reader.wrongToken("an array");
+            }
+            if (elements == null) {
+                elements = of(elementType);
+            }
+            Collection<Object> collection = (Collection<Object>) factory.get();
+            while (reader.nextToken() != JSONReader.END_ARRAY) {
+                collection.add(elements.read(reader));
+            }
+            return collection;
+        }
+    }
+
+    private static final class MapBinding extends Binding {
+
+        private final Supplier<Object> factory;
+        private final Type valueType;
+        private Binding values;
+
+        MapBinding(Class<?> type, Type valueType) {
+            this.factory = factory(type);
+            this.valueType = valueType;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object read(JSONReader reader) throws IOException, ParseException {
+            if (reader.currentToken() == JSONReader.VALUE_NULL) {
+                return null;
+            } else if (reader.currentToken() != JSONReader.START_OBJECT) {
+                throw reader.wrongToken("an object");
+            }
+            if (values == null) {
+                values = of(valueType);
+            }
+            Map<Object, Object> map = (Map<Object, Object>) factory.get();
+            while (reader.nextToken() == JSONReader.FIELD_NAME) {
+                String key = reader.getString();
+                reader.nextToken();
+                map.put(key, values.read(reader));
+            }
+            return map;
+        }
+    }
+
+    /**
+     * A field of a class or a component of a record, bound by name.
+     */
+    private static final class Property {
+
+        final Field field;
+        final int index;
+        final boolean primitive;
+        private final Type type;
+        private Binding binding;
+
+        Property(Field field, int index, Class<?> rawType, Type type) {
+            this.field = field;
+            this.index = index;
+            this.primitive = rawType.isPrimitive();
+            this.type = type;
+        }
+
+        /**
+         * Resolved on first use, so that a class can hold fields of its own
+         * type.
+         */
+        Binding binding() {
+            if (binding == null) {
+                binding = of(type);
+            }
+            return binding;
+        }
+    }
+
+    /**
+     * Reads the entries of an object into properties, skipping the unknown
+     * ones without building them.
+     */
+    private abstract static class ObjectBinding extends Binding {
+
+        final Class<?> type;
+        final Map<String, Property> properties = new HashMap<>();
+
+        ObjectBinding(Class<?> type) {
+            this.type = type;
+        }
+
+        abstract Object start();
+
+        abstract void set(Object target, Property property, Object value) throws IllegalAccessException;
+
+        abstract Object finish(Object target) throws ReflectiveOperationException;
+
+        @Override
+        Object read(JSONReader reader) throws IOException, ParseException {
+            if (reader.currentToken() == JSONReader.VALUE_NULL) {
+                return null;
+            } else if (reader.currentToken() != JSONReader.START_OBJECT) {
+                throw reader.wrongToken("an object");
+            }
+            try {
+                Object target = start();
+                while (reader.nextToken() == JSONReader.FIELD_NAME) {
+                    Property property = properties.get(reader.getString());
+                    if (property == null) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.nextToken();
+                    Object value = property.binding().read(reader);
+                    if (value != null || !property.primitive) {
+                        set(target, property, value);
+                    }
+                }
+                return finish(target);
+            } catch (ReflectiveOperationException e) {
+                throw bindingFailure(type, e);
+            }
+        }
+    }
+
+    private static final class BeanBinding extends ObjectBinding {
+
+        private final Constructor<?> constructor;
+
+        BeanBinding(Class<?> type) {
+            super(type);
+            constructor = constructor(type);
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()
+                            || properties.containsKey(field.getName())) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                    } catch (RuntimeException e) {
+                        throw bindingFailure(type, e);
+                    }
+                    properties.put(field.getName(), new Property(field, -1, field.getType(), field.getGenericType()));
+                }
+            }
+        }
+
+        @Override
+        Object start() {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw bindingFailure(type, e);
+            }
+        }
+
+        @Override
+        void set(Object target, Property property, Object value) throws IllegalAccessException {
+            property.field.set(target, value);
+        }
+
+        @Override
+        Object finish(Object target) {
+            return target;
+        }
+    }
+
+    private static final class RecordBinding extends ObjectBinding {
+
+        private final Constructor<?> constructor;
+
+        /**
+         * the values of the components missing from the input
+         */
+        private final Object[] defaults;
+
+        RecordBinding(Class<?> type) {
+            super(type);
+            Class<?>[] types;
+            try {
+                Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+                Class<?> componentClass = components.getClass().getComponentType();
+                Method getName = componentClass.getMethod("getName");
+                Method getType = componentClass.getMethod("getType");
+                Method getGenericType = componentClass.getMethod("getGenericType");
+                types = new Class<?>[components.length];
+                defaults = new Object[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    types[i] = (Class<?>) getType.invoke(components[i]);
+                    if (types[i].isPrimitive()) {
+                        defaults[i] = Array.get(Array.newInstance(types[i], 1), 0);
+                    }
+                    String name = (String) getName.invoke(components[i]);
+                    properties.put(name, new Property(null, i, types[i], (Type) getGenericType.invoke(components[i])));
+                }
+            } catch (ReflectiveOperationException e) {
+                throw bindingFailure(type, e);
+            }
+            constructor = constructor(type, types);
+        }
+
+        @Override
+        Object start() {
+            return defaults.clone();
+        }
+
+        @Override
+        void set(Object target, Property property, Object value) {
+            ((Object[]) target)[property.index] = value;
+        }
+
+        @Override
+        Object finish(Object target) throws ReflectiveOperationException {
+            return constructor.newInstance((Object[]) target);
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.StringSlice;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Hand-written scanner for character input, accepting the same input and
+ * returning the same tokens and errors as the JFlex-generated {@link Yylex}.
+ * The first character of a token is dispatched through a 128-entry table, so
+ * there is no character map to unpack when the class is loaded and no
+ * automaton to run per character.
+ * <p>
+ * Arrays and strings are scanned in place; readers are read through a window
+ * that grows to hold the longest token.
+ *
+ * @see JSONParser#setHandWrittenLexer(boolean)
+ */
+class CharLexer extends Lexer {
+
+    /**
+     * initial size of the window used for reader input
+     */
+    private static final int WINDOW_SIZE = 8192;
+
+    /**
+     * initial size of the buffer used to decode strings with escape sequences
+     */
+    private static final int CHARS_SIZE = 256;
+
+    private static final char[] NO_CHARS = new char[0];
+
+    /**
+     * classes of the first character of a token
+     */
+    private static final byte OTHER = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte STRUCTURAL = 2;
+    private static final byte QUOTE = 3;
+    private static final byte LITERAL = 4;
+    private static final byte NUMBER = 5;
+
+    private static final byte[] CLASSES = new byte[128];
+
+    /**
+     * token types of the structural characters
+     */
+    private static final byte[] TYPES = new byte[128];
+
+    static {
+        CLASSES[' '] = CLASSES['\t'] = CLASSES['\n'] = CLASSES['\r'] = WHITESPACE;
+        CLASSES['"'] = QUOTE;
+        CLASSES['t'] = CLASSES['f'] = CLASSES['n'] = LITERAL;
+        CLASSES['-'] = NUMBER;
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] = NUMBER;
+        }
+        structural('{', Yytoken.TYPE_LEFT_BRACE);
+        structural('}', Yytoken.TYPE_RIGHT_BRACE);
+        structural('[', Yytoken.TYPE_LEFT_SQUARE);
+        structural(']', Yytoken.TYPE_RIGHT_SQUARE);
+        structural(',', Yytoken.TYPE_COMMA);
+        structural(':', Yytoken.TYPE_COLON);
+    }
+
+    private static void structural(char c, int type) {
+        CLASSES[c] = STRUCTURAL;
+        TYPES[c] = (byte) type;
+    }
+
+    /**
+     * the chars being scanned, either the caller's array or the window
+     */
+    private char[] buf = NO_CHARS;
+
+    /**
+     * the current scan position in buf
+     */
+    private int pos;
+
+    /**
+     * the end of the valid chars in buf
+     */
+    private int limit;
+
+    /**
+     * the first char in buf that has to survive a refill
+     */
+    private int mark;
+
+    /**
+     * the input position of buf[0]
+     */
+    private int base;
+
+    /**
+     * the input position of the beginning of the current token
+     */
+    private int tokenStart;
+
+    private Reader in;
+    private char[] window;
+    private char[] chars = new char[CHARS_SIZE];
+
+    /**
+     * the whole input if it is known, to return string values as slices
+     */
+    private String source;
+
+    /**
+     * Resets the scanner to read from a new reader. Does not close the old
+     * reader.
+     */
+    void yyreset(Reader in) {
+        this.in = in;
+        if (in != null && window == null) {
+            window = new char[WINDOW_SIZE];
+        }
+        buf = in != null ? window : NO_CHARS;
+        pos = limit = mark = 0;
+        base = tokenStart = 0;
+        source = null;
+    }
+
+    /**
+     * Resets the scanner to read a range of an array in place, without
+     * copying it. Positions are relative to off.
+     */
+    void yyreset(char[] b, int off, int len) {
+        yyreset((Reader) null);
+        buf = b;
+        pos = mark = off;
+        limit = off + len;
+        base = -off;
+    }
+
+    /**
+     * Resets the scanner to read a string, copied once into the window if it
+     * is large enough, or else into an array of the size of the string.
+     */
+    void yyreset(String s) {
+        int len = s.length();
+        char[] b = window != null && window.length >= len ? window : new char[len];
+        s.getChars(0, len, b, 0);
+        yyreset(b, 0, len);
+        source = s;
+    }
+
+    @Override
+    int getPosition() {
+        return tokenStart;
+    }
+
+    @Override
+    int bufferCapacity() {
+        return (window == null ? 0 : window.length) + chars.length;
+    }
+
+    /**
+     * Refills the window, keeping everything from mark on.
+     *
+     * @return false iff there is no more input.
+     */
+    private boolean refill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        if (mark > 0) {
+            System.arraycopy(buf, mark, buf, 0, limit - mark);
+            base += mark;
+            pos -= mark;
+            limit -= mark;
+            mark = 0;
+        }
+        if (limit == buf.length) {
+            char[] newBuffer = new char[buf.length * 2];
+            System.arraycopy(buf, 0, newBuffer, 0, limit);
+            buf = window = newBuffer;
+        }
+        int numRead = in.read(buf, limit, buf.length - limit);
+        if (numRead == 0) {
+            int c = in.read();
+            if (c < 0) {
+                return false;
+            }
+            buf[limit++] = (char) c;
+            return true;
+        }
+        if (numRead > 0) {
+            limit += numRead;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the char at pos + i, or -1 at the end of input.
+     */
+    private int peek(int i) throws IOException {
+        while (pos + i >= limit) {
+            if (!refill()) {
+                return -1;
+            }
+        }
+        return buf[pos + i];
+    }
+
+    @Override
+    int yylex() throws IOException, ParseException {
+        while (true) {
+            if (pos >= limit) {
+                mark = pos;
+                if (!refill()) {
+                    tokenStart = base + pos;
+                    return token(Yytoken.TYPE_EOF, null);
+                }
+            }
+            mark = pos;
+            tokenStart = base + pos;
+            char c = buf[pos];
+            switch (c < 128 ? CLASSES[c] : OTHER) {
+                case WHITESPACE:
+                    pos++;
+                    break;
+                case STRUCTURAL:
+                    pos++;
+                    return token(TYPES[c], null);
+                case QUOTE:
+                    pos++;
+                    return scanString();
+                case LITERAL:
+                    if (c == 't') {
+                        scanLiteral("true");
+                        return token(Yytoken.TYPE_VALUE, Boolean.TRUE);
+                    } else if (c == 'f') {
+                        scanLiteral("false");
+                        return token(Yytoken.TYPE_VALUE, Boolean.FALSE);
+                    }
+                    scanLiteral("null");
+                    return token(Yytoken.TYPE_VALUE, null);
+                case NUMBER:
+                    return token(Yytoken.TYPE_VALUE, scanNumber());
+                default:
+                    throw unexpectedChar();
+            }
+        }
+    }
+
+    private ParseException unexpectedChar() {
+        return new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_CHAR, buf[pos]);
+    }
+
+    private void scanLiteral(String literal) throws IOException, ParseException {
+        for (int i = 1; i < literal.length(); i++) {
+            if (peek(i) != literal.charAt(i)) {
+                throw unexpectedChar();
+            }
+        }
+        pos += literal.length();
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * INT = [-]?[0-9]+, DOUBLE = {INT}((\.[0-9]+)?([eE][-+]?[0-9]+)?)
+     */
+    private Number scanNumber() throws IOException, ParseException {
+        int i = buf[pos] == '-' ? 1 : 0;
+        if (!isDigit(peek(i))) {
+            throw unexpectedChar();
+        }
+        while (isDigit(peek(++i))) {
+        }
+        boolean isDouble = false;
+        if (peek(i) == '.' && isDigit(peek(i + 1))) {
+            isDouble = true;
+            i++;
+            while (isDigit(peek(++i))) {
+            }
+        }
+        int e = peek(i);
+        if (e == 'e' || e == 'E') {
+            int sign = peek(i + 1);
+            int j = sign == '+' || sign == '-' ? i + 2 : i + 1;
+            if (isDigit(peek(j))) {
+                isDouble = true;
+                i = j;
+                while (isDigit(peek(++i))) {
+                }
+            }
+        }
+        int start = pos;
+        pos += i;
+        if (numberFactory != null) {
+            Number number = numberFactory.createNumber(buf, start, i, isDouble);
+            if (number != null) {
+                return number;
+            }
+        }
+        return isDouble ? (Number) DoubleParser.parseDouble(buf, start, i) : integer(buf, start, i);
+    }
+
+    /**
+     * Scans the rest of a string token, pos being just after the opening
+     * quote. A string without escape sequences is built straight from the
+     * buffer.
+     *
+     * @return the type of the string token, reported at its closing quote
+     * like Yylex does, or TYPE_EOF if the input ends inside the string.
+     */
+    private int scanString() throws IOException {
+        int n = 0;
+        while (true) {
+            if (pos + n >= limit) {
+                if (!refill()) {
+                    pos += n;
+                    tokenStart = base + pos;
+                    return token(Yytoken.TYPE_EOF, null);
+                }
+                continue;
+            }
+            char c = buf[pos + n];
+            if (c == '"') {
+                Object value;
+                if (stringSlices && source != null && !keyExpected) {
+                    value = new StringSlice(source, base + pos, base + pos + n);
+                } else if (keyExpected && keyCache != null) {
+                    value = keyCache.get(buf, pos, n);
+                } else {
+                    value = new String(buf, pos, n);
+                }
+                pos += n;
+                tokenStart = base + pos;
+                pos++;
+                return token(Yytoken.TYPE_VALUE, value);
+            } else if (c == '\\') {
+                break;
+            }
+            n++;
+        }
+        ensureChars(0, n);
+        System.arraycopy(buf, pos, chars, 0, n);
+        pos += n;
+        return scanEscapedString(n);
+    }
+
+    /**
+     * Scans the rest of a string token with escape sequences, the first n
+     * chars of which are already in chars.
+     */
+    private int scanEscapedString(int n) throws IOException {
+        while (true) {
+            if (pos >= limit) {
+                mark = pos;
+                if (!refill()) {
+                    tokenStart = base + pos;
+                    return token(Yytoken.TYPE_EOF, null);
+                }
+            }
+            char c = buf[pos];
+            if (c == '"') {
+                tokenStart = base + pos;
+                pos++;
+                String value = keyExpected && keyCache != null ? keyCache.get(chars, 0, n) : new String(chars, 0, n);
+                return token(Yytoken.TYPE_VALUE, value);
+            }
+            ensureChars(n, 1);
+            if (c == '\\') {
+                mark = pos;
+                n = scanEscape(n);
+            } else {
+                chars[n++] = c;
+                pos++;
+            }
+        }
+    }
+
+    private void ensureChars(int n, int more) {
+        if (n + more > chars.length) {
+            char[] newChars = new char[Math.max(chars.length * 2, n + more)];
+            System.arraycopy(chars, 0, newChars, 0, n);
+            chars = newChars;
+        }
+    }
+
+    private int scanEscape(int n) throws IOException {
+        int c = peek(1);
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                chars[n++] = (char) c;
+                break;
+            case 'b':
+                chars[n++] = '\b';
+                break;
+            case 'f':
+                chars[n++] = '\f';
+                break;
+            case 'n':
+                chars[n++] = '\n';
+                break;
+            case 'r':
+                chars[n++] = '\r';
+                break;
+            case 't':
+                chars[n++] = '\t';
+                break;
+            case 'u':
+                int ch = 0;
+                for (int i = 2; i < 6; i++) {
+                    int d = hexDigit(peek(i));
+                    if (d < 0) {
+                        return keepBackslash(n);
+                    }
+                    ch = (ch << 4) | d;
+                }
+                chars[n++] = (char) ch;
+                pos += 6;
+                return n;
+            default:
+                return keepBackslash(n);
+        }
+        pos += 2;
+        return n;
+    }
+
+    private static int hexDigit(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Unknown escapes are kept as they are, like Yylex does.
+     */
+    private int keepBackslash(int n) {
+        chars[n++] = '\\';
+        pos++;
+        return n;
+    }
+
+    @Override
+    int skipValue() throws IOException {
+        int first = -1;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (pos >= limit) {
+                /* drop what has been skipped so that the window does not grow */
+                mark = pos;
+                if (!refill()) {
+                    return first;
+                }
+            }
+            char c = buf[pos];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 0) {
+                        pos++;
+                        return first;
+                    }
+                }
+                pos++;
+                continue;
+            }
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                case ',':
+                case ':':
+                case ']':
+                case '}':
+                    if (first == -1 && (c == ' ' || c == '\t' || c == '\n' || c == '\r')) {
+                        break;
+                    }
+                    if (depth == 0) {
+                        return first == -1 ? c : first;
+                    }
+                    if ((c == ']' || c == '}') && --depth == 0) {
+                        pos++;
+                        return first;
+                    }
+                    break;
+                case '[':
+                case '{':
+                case '"':
+                    if (first == -1) {
+                        first = c;
+                        tokenStart = base + pos;
+                    } else if (depth == 0) {
+                        return first;
+                    }
+                    if (c == '"') {
+                        inString = true;
+                    } else {
+                        depth++;
+                    }
+                    break;
+                default:
+                    if (first == -1) {
+                        first = c;
+                        tokenStart = base + pos;
+                    }
+                    break;
+            }
+            pos++;
+        }
+    }
+}
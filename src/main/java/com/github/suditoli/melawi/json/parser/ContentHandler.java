@@ -40,6 +40,7 @@ public interface ContentHandler {
      * exception to the caller when receiving this exception.
      * @throws java.io.IOException
      * @see #endJSON
+     * @see JSONParser#skipValue()
      */
     boolean startObject() throws ParseException, IOException;
 
@@ -64,6 +65,7 @@ public interface ContentHandler {
      * @throws java.io.IOException
      *
      * @see #endObjectEntry
+     * @see JSONParser#skipValue()
      */
     boolean startObjectEntry(String key) throws ParseException, IOException;
 
@@ -86,6 +88,7 @@ public interface ContentHandler {
      * @throws java.io.IOException
      *
      * @see #endArray
+     * @see JSONParser#skipValue()
      */
     boolean startArray() throws ParseException, IOException;
 
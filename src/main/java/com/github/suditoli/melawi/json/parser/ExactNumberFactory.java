@@ -0,0 +1,79 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Number factory keeping every JSON number exact: fractional numbers become
+ * BigDecimal, integers become Long when they fit and BigInteger otherwise.
+ * Numbers with up to 18 significant digits are built from a long without
+ * going through a String; longer ones fall back to the BigDecimal and
+ * BigInteger parsers.
+ *
+ * @see JSONParser#setNumberFactory(NumberFactory)
+ */
+public class ExactNumberFactory implements NumberFactory {
+
+    public static final ExactNumberFactory INSTANCE = new ExactNumberFactory();
+
+    /**
+     * Number of decimal digits that always fit in a long.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    @Override
+    public Number createNumber(char[] chars, int off, int len, boolean fractional) {
+        int end = off + len;
+        int i = off;
+        boolean negative = chars[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        for (; i < end && chars[i] >= '0' && chars[i] <= '9'; i++) {
+            if (digits > 0 || chars[i] != '0') {
+                unscaled = unscaled * 10 + (chars[i] - '0');
+                digits++;
+            }
+        }
+        if (!fractional) {
+            if (digits <= MAX_LONG_DIGITS) {
+                return Long.valueOf(negative ? -unscaled : unscaled);
+            }
+            BigInteger value = new BigInteger(new String(chars, off, len));
+            return value.bitLength() < 64 ? (Number) Long.valueOf(value.longValue()) : value;
+        }
+        if (i < end && chars[i] == '.') {
+            for (i++; i < end && chars[i] >= '0' && chars[i] <= '9'; i++) {
+                if (digits > 0 || chars[i] != '0') {
+                    unscaled = unscaled * 10 + (chars[i] - '0');
+                    digits++;
+                }
+                scale++;
+            }
+        }
+        if (digits > MAX_LONG_DIGITS) {
+            return new BigDecimal(chars, off, len);
+        }
+        if (i < end) {
+            // exponent
+            i++;
+            boolean negativeExponent = chars[i] == '-';
+            if (chars[i] == '-' || chars[i] == '+') {
+                i++;
+            }
+            long exponent = 0;
+            for (; i < end && exponent <= Integer.MAX_VALUE; i++) {
+                exponent = exponent * 10 + (chars[i] - '0');
+            }
+            long newScale = negativeExponent ? scale + exponent : scale - exponent;
+            if (i < end || newScale < Integer.MIN_VALUE || newScale > Integer.MAX_VALUE) {
+                return new BigDecimal(chars, off, len);
+            }
+            scale = (int) newScale;
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+}
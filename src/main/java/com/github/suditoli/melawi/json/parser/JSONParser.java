@@ -5,16 +5,27 @@
 package com.github.suditoli.melawi.json.parser;
 
 import com.github.suditoli.melawi.json.JSONArray;
+import com.github.suditoli.melawi.json.JSONException;
 import com.github.suditoli.melawi.json.JSONObject;
+import com.github.suditoli.melawi.json.LazyNumber;
+import com.github.suditoli.melawi.json.StringSlice;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
-import java.io.StringReader;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 /**
- * Parser for JSON text. Please note that JSONParser is NOT thread-safe.
+ * Parser for JSON text. Please note that JSONParser is NOT thread-safe; use
+ * {@link JSONParsers} to share parsers between threads.
  *
  * @author FangYidong<fangyidong@yahoo.com.cn>
  */
@@ -29,16 +40,77 @@ public class JSONParser {
     public static final int S_END = 6;
     public static final int S_IN_ERROR = -1;
 
-    private LinkedList handlerStatusStack;
-    private Yylex lexer = new Yylex((Reader) null);
-    private Yytoken token = null;
+    /**
+     * Largest region of a file mapped by a single buffer.
+     */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    private static final NumberFactory LAZY_NUMBERS = (chars, off, len, fractional) -> new LazyNumber(new String(chars, off, len), fractional);
+
+    /**
+     * Initial capacity of the status and value stacks.
+     */
+    private static final int INITIAL_DEPTH = 16;
+
+    private int[] statusStack = new int[INITIAL_DEPTH];
+    private int statusDepth;
+    private Object[] valueStack = new Object[INITIAL_DEPTH];
+    private int valueDepth;
+    private int[] pathStack = new int[INITIAL_DEPTH];
+    private int pathDepth;
+    private boolean sized;
+    private boolean handlerActive;
+    private boolean skipRequested;
+    private Yylex charLexer;
+    private CharLexer handWrittenLexer;
+    private Utf8Lexer byteLexer;
+    /**
+     * The lexer of the current input, or null before the first one is set.
+     */
+    private Lexer lexer;
+    private int tokenType = Yytoken.TYPE_EOF;
     private int status = S_INIT;
+    private KeyCache keyCache;
+    private NumberFactory numberFactory;
+    private boolean stringSlices;
+    private LongCache longCache;
+    private boolean handWritten;
+    private SizeProfile sizeProfile;
+    private Settings pooledSettings;
 
-    private int peekStatus(LinkedList statusStack) {
-        if (statusStack.isEmpty()) {
+    private int peekStatus() {
+        if (statusDepth == 0) {
             return -1;
         }
-        return (Integer) statusStack.getFirst();
+        return statusStack[statusDepth - 1];
+    }
+
+    private void pushStatus(int status) {
+        if (statusDepth == statusStack.length) {
+            statusStack = Arrays.copyOf(statusStack, statusDepth * 2);
+        }
+        statusStack[statusDepth++] = status;
+    }
+
+    private void popStatus() {
+        statusDepth--;
+    }
+
+    private Object peekValue() {
+        return valueStack[valueDepth - 1];
+    }
+
+    private void pushValue(Object value) {
+        if (valueDepth == valueStack.length) {
+            valueStack = Arrays.copyOf(valueStack, valueDepth * 2);
+        }
+        valueStack[valueDepth++] = value;
+    }
+
+    private Object popValue() {
+        Object value = valueStack[--valueDepth];
+        valueStack[valueDepth] = null;
+        return value;
     }
 
     /**
@@ -47,9 +119,152 @@ public class JSONParser {
      *
      */
     public void reset() {
-        token = null;
+        tokenType = Yytoken.TYPE_EOF;
         status = S_INIT;
-        handlerStatusStack = null;
+        statusDepth = 0;
+        Arrays.fill(valueStack, 0, valueDepth, null);
+        valueDepth = 0;
+        pathDepth = 0;
+        handlerActive = false;
+        skipRequested = false;
+        if (lexer != null) {
+            lexer.keyCache = keyCache;
+            lexer.numberFactory = numberFactory;
+            lexer.stringSlices = stringSlices;
+            lexer.longCache = longCache;
+        }
+    }
+
+    /**
+     * Canonicalize the keys of JSON objects through a cache, so repeated keys
+     * are not allocated again and are shared by all the objects built.
+     *
+     * @param keyCache - The cache to use, or null to create a new String for
+     * every key.
+     */
+    public void setKeyCache(KeyCache keyCache) {
+        this.keyCache = keyCache;
+        if (lexer != null) {
+            lexer.keyCache = keyCache;
+        }
+    }
+
+    public KeyCache getKeyCache() {
+        return keyCache;
+    }
+
+    /**
+     * Build numbers as {@link LazyNumber} instances keeping the original
+     * digits, instead of Long and Double. The conversion then only happens
+     * when a numeric value is read, and writing the number back to JSON text
+     * reproduces the original digits.
+     *
+     * @param lazyNumbers
+     */
+    public void setLazyNumbers(boolean lazyNumbers) {
+        setNumberFactory(lazyNumbers ? LAZY_NUMBERS : null);
+    }
+
+    public boolean isLazyNumbers() {
+        return numberFactory == LAZY_NUMBERS;
+    }
+
+    /**
+     * Create the values of JSON numbers with a factory working on the
+     * characters matched by the lexer, for instance
+     * {@link ExactNumberFactory} to get BigDecimal values without a double
+     * conversion.
+     *
+     * @param numberFactory - The factory to use, or null for Long and Double.
+     */
+    public void setNumberFactory(NumberFactory numberFactory) {
+        this.numberFactory = numberFactory;
+        if (lexer != null) {
+            lexer.numberFactory = numberFactory;
+        }
+    }
+
+    public NumberFactory getNumberFactory() {
+        return numberFactory;
+    }
+
+    /**
+     * Box integers through a cache, so the small values that come up again
+     * and again, such as ids, counts and codes, are not allocated again.
+     * Integers are always accumulated without an intermediate String; those
+     * not fitting in a long become BigInteger.
+     *
+     * @param longCache - The cache to use, or null for Long.valueOf.
+     */
+    public void setLongCache(LongCache longCache) {
+        this.longCache = longCache;
+        if (lexer != null) {
+            lexer.longCache = longCache;
+        }
+    }
+
+    public LongCache getLongCache() {
+        return longCache;
+    }
+
+    /**
+     * Return string values without escape sequences as {@link StringSlice}
+     * instances over the input instead of String, when parsing a String, a
+     * byte array or a ByteBuffer. A slice is only copied into a String when
+     * {@link JSONObject#getString(String)} or its toString() is called.
+     * Escaped strings and object keys are still decoded into String, as are
+     * strings read from a Reader or an InputStream.
+     * <p>
+     * A slice holds a reference to the whole input, and a slice over a
+     * ByteBuffer reads it on every access, so its content must not change
+     * while the values are in use.
+     *
+     * @param stringSlices
+     */
+    public void setStringSlices(boolean stringSlices) {
+        this.stringSlices = stringSlices;
+        if (lexer != null) {
+            lexer.stringSlices = stringSlices;
+        }
+    }
+
+    public boolean isStringSlices() {
+        return stringSlices;
+    }
+
+    /**
+     * Learn the sizes of the objects and arrays built at each path, and
+     * allocate the containers of the next documents with those sizes, as
+     * {@link SizedContainerFactory} hints and as the initial capacity of
+     * JSONObject and JSONArray. A profile pays off when documents of the
+     * same shape are parsed repeatedly.
+     *
+     * @param sizeProfile - The profile to learn into, or null.
+     */
+    public void setSizeProfile(SizeProfile sizeProfile) {
+        this.sizeProfile = sizeProfile;
+    }
+
+    public SizeProfile getSizeProfile() {
+        return sizeProfile;
+    }
+
+    /**
+     * Scan character input, from a String, a char array or a Reader, with a
+     * hand-written lexer instead of the JFlex-generated one. Both accept the
+     * same input and report the same values and errors; the hand-written one
+     * dispatches on the first character of each token through a small table
+     * and has no tables to unpack when it is first used. Takes effect when
+     * the next input is set.
+     *
+     * @param handWritten
+     */
+    public void setHandWrittenLexer(boolean handWritten) {
+        this.handWritten = handWritten;
+    }
+
+    public boolean isHandWrittenLexer() {
+        return handWritten;
     }
 
     /**
@@ -60,15 +275,220 @@ public class JSONParser {
      * @throws ParseException
      */
     public void reset(Reader in) {
-        lexer.yyreset(in);
+        if (handWritten) {
+            handWrittenLexer().yyreset(in);
+            lexer = handWrittenLexer;
+        } else {
+            charLexer().yyreset(in);
+            lexer = charLexer;
+        }
+        reset();
+    }
+
+    /**
+     * Reset the parser to the initial state with a string, scanned without a
+     * reader. The lexer may slice string values from it.
+     */
+    private void reset(String s) {
+        if (handWritten) {
+            handWrittenLexer().yyreset(s);
+            lexer = handWrittenLexer;
+        } else {
+            charLexer().yyreset(s);
+            lexer = charLexer;
+        }
+        reset();
+    }
+
+    /**
+     * Reset the parser to the initial state with a range of chars. The array
+     * is scanned in place.
+     *
+     * @param b - The new input chars.
+     * @param off - Offset of the first char to parse.
+     * @param len - Number of chars to parse.
+     */
+    public void reset(char[] b, int off, int len) {
+        if (handWritten) {
+            handWrittenLexer().yyreset(b, off, len);
+            lexer = handWrittenLexer;
+        } else {
+            charLexer().yyreset(b, off, len);
+            lexer = charLexer;
+        }
+        reset();
+    }
+
+    /**
+     * Reset the parser to the initial state with a range of UTF-8 encoded
+     * bytes. The array is scanned in place.
+     *
+     * @param b - The new input bytes.
+     * @param off - Offset of the first byte to parse.
+     * @param len - Number of bytes to parse.
+     */
+    public void reset(byte[] b, int off, int len) {
+        byteLexer().yyreset(b, off, len);
+        lexer = byteLexer;
+        reset();
+    }
+
+    /**
+     * Reset the parser to the initial state with a new UTF-8 encoded byte
+     * stream.
+     *
+     * @param in - The new byte stream.
+     */
+    public void reset(InputStream in) {
+        byteLexer().yyreset(in);
+        lexer = byteLexer;
+        reset();
+    }
+
+    /**
+     * Reset the parser to the initial state with the remaining bytes of a
+     * UTF-8 encoded buffer. The position of the buffer is not modified.
+     *
+     * @param bb - The new input buffer.
+     */
+    public void reset(ByteBuffer bb) {
+        byteLexer().yyreset(bb);
+        lexer = byteLexer;
+        reset();
+    }
+
+    /**
+     * Reset the parser to the initial state with a UTF-8 encoded file. The
+     * file is memory-mapped, in several windows if it is larger than
+     * {@value #MAP_WINDOW} bytes, and read through the page cache.
+     *
+     * @param path - The new input file.
+     * @throws IOException
+     */
+    public void reset(Path path) throws IOException {
+        reset(map(path));
+    }
+
+    private void reset(ByteBuffer[] windows) {
+        byteLexer().yyreset(windows);
+        lexer = byteLexer;
+        reset();
+    }
+
+    /**
+     * Map a file in windows of {@value #MAP_WINDOW} bytes.
+     */
+    private static ByteBuffer[] map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] windows = new ByteBuffer[(int) ((size + MAP_WINDOW - 1) / MAP_WINDOW)];
+            for (int i = 0; i < windows.length; i++) {
+                long position = i * MAP_WINDOW;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position));
+            }
+            return windows;
+        }
+    }
+
+    /**
+     * The settings a parser is given back with by {@link JSONParsers}.
+     */
+    private static final class Settings {
+
+        private final KeyCache keyCache;
+        private final NumberFactory numberFactory;
+        private final LongCache longCache;
+        private final boolean stringSlices;
+        private final boolean handWritten;
+        private final SizeProfile sizeProfile;
+
+        Settings(JSONParser parser) {
+            keyCache = parser.keyCache;
+            numberFactory = parser.numberFactory;
+            longCache = parser.longCache;
+            stringSlices = parser.stringSlices;
+            handWritten = parser.handWritten;
+            sizeProfile = parser.sizeProfile;
+        }
+
+        void restore(JSONParser parser) {
+            parser.setKeyCache(keyCache);
+            parser.setNumberFactory(numberFactory);
+            parser.setLongCache(longCache);
+            parser.setStringSlices(stringSlices);
+            parser.setHandWrittenLexer(handWritten);
+            parser.setSizeProfile(sizeProfile);
+        }
+    }
+
+    /**
+     * Remember the current settings as those {@link #recycle(int)} restores.
+     * Called by {@link JSONParsers} on the parsers its factory creates.
+     */
+    void savePooledSettings() {
+        pooledSettings = new Settings(this);
+    }
+
+    /**
+     * Prepares this parser for reuse by {@link JSONParsers}: resets it, drops
+     * every reference to the last input and its values, and restores the
+     * settings it had when the pool created it, so that a borrower does not
+     * see the settings of the previous one.
+     *
+     * @param maxCapacity - Buffer capacity above which the parser should not
+     * be kept.
+     * @return false if the buffers grew beyond maxCapacity while parsing, or
+     * if the parser was not created by a pool.
+     */
+    boolean recycle(int maxCapacity) {
+        if (pooledSettings == null) {
+            return false;
+        }
+        pooledSettings.restore(this);
         reset();
+        lexer = null;
+        int capacity = statusStack.length + valueStack.length;
+        if (handWrittenLexer != null) {
+            handWrittenLexer.yyreset((Reader) null);
+            capacity += handWrittenLexer.bufferCapacity();
+        }
+        if (charLexer != null) {
+            charLexer.yyreset((Reader) null);
+            capacity += charLexer.bufferCapacity();
+        }
+        if (byteLexer != null) {
+            byteLexer.yyreset((InputStream) null);
+            capacity += byteLexer.bufferCapacity();
+        }
+        return capacity <= maxCapacity;
+    }
+
+    private CharLexer handWrittenLexer() {
+        if (handWrittenLexer == null) {
+            handWrittenLexer = new CharLexer();
+        }
+        return handWrittenLexer;
+    }
+
+    private Yylex charLexer() {
+        if (charLexer == null) {
+            charLexer = new Yylex((Reader) null);
+        }
+        return charLexer;
+    }
+
+    private Utf8Lexer byteLexer() {
+        if (byteLexer == null) {
+            byteLexer = new Utf8Lexer();
+        }
+        return byteLexer;
     }
 
     /**
      * @return The position of the beginning of the current token.
      */
     public int getPosition() {
-        return lexer.getPosition();
+        return lexer == null ? 0 : lexer.getPosition();
     }
 
     public Object parse(String s) throws ParseException {
@@ -76,9 +496,9 @@ public class JSONParser {
     }
 
     public Object parse(String s, ContainerFactory containerFactory) throws ParseException {
-        StringReader in = new StringReader(s);
+        reset(s);
         try {
-            return parse(in, containerFactory);
+            return parseDocument(containerFactory);
         } catch (IOException ie) {
             /*
              * Actually it will never happen.
@@ -106,29 +526,459 @@ public class JSONParser {
      */
     public Object parse(Reader in, ContainerFactory containerFactory) throws IOException, ParseException {
         reset(in);
-        LinkedList statusStack = new LinkedList();
-        LinkedList valueStack = new LinkedList();
+        return parseDocument(containerFactory);
+    }
+
+    public Object parse(char[] b, int off, int len) throws ParseException {
+        return parse(b, off, len, (ContainerFactory) null);
+    }
+
+    /**
+     * Parse JSON text into java object from a range of chars, scanned in place
+     * without a reader or a copy.
+     *
+     * @param b
+     * @param off - Offset of the first char to parse.
+     * @param len - Number of chars to parse.
+     * @param containerFactory - Use this factory to create your own JSON
+     * object and JSON array containers.
+     * @return Instance of the following: org.json.simple.JSONObject,
+     * org.json.simple.JSONArray, java.lang.String, java.lang.Number,
+     * java.lang.Boolean, null
+     *
+     * @throws ParseException - With the offset of the error from off as
+     * position.
+     */
+    public Object parse(char[] b, int off, int len, ContainerFactory containerFactory) throws ParseException {
+        reset(b, off, len);
+        try {
+            return parseDocument(containerFactory);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    public Object parse(byte[] b, int off, int len) throws ParseException {
+        return parse(b, off, len, (ContainerFactory) null);
+    }
+
+    /**
+     * Parse UTF-8 encoded JSON text into java object from a range of bytes.
+     * The bytes are scanned directly and only the contents of strings are
+     * decoded.
+     *
+     * @param b
+     * @param off - Offset of the first byte to parse.
+     * @param len - Number of bytes to parse.
+     * @param containerFactory - Use this factory to create your own JSON
+     * object and JSON array containers.
+     * @return Instance of the following: org.json.simple.JSONObject,
+     * org.json.simple.JSONArray, java.lang.String, java.lang.Number,
+     * java.lang.Boolean, null
+     *
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public Object parse(byte[] b, int off, int len, ContainerFactory containerFactory) throws ParseException {
+        reset(b, off, len);
+        try {
+            return parseDocument(containerFactory);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    public Object parse(InputStream in) throws IOException, ParseException {
+        return parse(in, (ContainerFactory) null);
+    }
+
+    /**
+     * Parse UTF-8 encoded JSON text into java object from a byte stream
+     * without decoding it through a Reader first.
+     *
+     * @param in
+     * @param containerFactory - Use this factory to create your own JSON
+     * object and JSON array containers.
+     * @return Instance of the following: org.json.simple.JSONObject,
+     * org.json.simple.JSONArray, java.lang.String, java.lang.Number,
+     * java.lang.Boolean, null
+     *
+     * @throws IOException
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public Object parse(InputStream in, ContainerFactory containerFactory) throws IOException, ParseException {
+        reset(in);
+        return parseDocument(containerFactory);
+    }
 
+    /**
+     * Parse JSON text straight into an instance of a class, a record, an
+     * array or a collection, without building JSONObject or JSONArray
+     * instances.
+     *
+     * @see JSONReader#readValue(Class)
+     *
+     * @param <T>
+     * @param s
+     * @param type
+     * @return The value, null for JSON null.
+     * @throws ParseException
+     * @throws JSONException - If the value does not fit the type, or the type
+     * cannot be bound.
+     */
+    public <T> T parse(String s, Class<T> type) throws ParseException {
+        reset(s);
+        try {
+            return bind(type);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    /**
+     * @see #parse(String, Class)
+     */
+    public <T> T parse(Reader in, Class<T> type) throws IOException, ParseException {
+        reset(in);
+        return bind(type);
+    }
+
+    /**
+     * @see #parse(String, Class)
+     *
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public <T> T parse(byte[] b, int off, int len, Class<T> type) throws ParseException {
+        reset(b, off, len);
+        try {
+            return bind(type);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    /**
+     * @see #parse(String, Class)
+     *
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public <T> T parse(InputStream in, Class<T> type) throws IOException, ParseException {
+        reset(in);
+        return bind(type);
+    }
+
+    private <T> T bind(Class<T> type) throws IOException, ParseException {
+        if (numberFactory == null) {
+            // from the first token on, so that a number document is exact too
+            lexer.numberFactory = Binding.EXACT_FRACTIONS;
+        }
+        JSONReader reader = new JSONReader(lexer, null);
+        reader.nextToken();
+        T value = reader.readValue(type);
+        // reports anything but the end of input
+        reader.nextToken();
+        return value;
+    }
+
+    public Object parse(ByteBuffer bb) throws ParseException {
+        return parse(bb, (ContainerFactory) null);
+    }
+
+    /**
+     * Parse UTF-8 encoded JSON text into java object from the remaining bytes
+     * of a buffer. The position of the buffer is not modified.
+     *
+     * @param bb
+     * @param containerFactory - Use this factory to create your own JSON
+     * object and JSON array containers.
+     * @return Instance of the following: org.json.simple.JSONObject,
+     * org.json.simple.JSONArray, java.lang.String, java.lang.Number,
+     * java.lang.Boolean, null
+     *
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public Object parse(ByteBuffer bb, ContainerFactory containerFactory) throws ParseException {
+        reset(bb);
+        try {
+            return parseDocument(containerFactory);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    public Object parseFile(Path path) throws IOException, ParseException {
+        return parseFile(path, (ContainerFactory) null);
+    }
+
+    /**
+     * Parse a UTF-8 encoded JSON file into java object. The file is
+     * memory-mapped instead of being read through a Reader.
+     *
+     * @see #reset(Path)
+     *
+     * @param path
+     * @param containerFactory - Use this factory to create your own JSON
+     * object and JSON array containers.
+     * @return Instance of the following: org.json.simple.JSONObject,
+     * org.json.simple.JSONArray, java.lang.String, java.lang.Number,
+     * java.lang.Boolean, null
+     *
+     * @throws IOException
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public Object parseFile(Path path, ContainerFactory containerFactory) throws IOException, ParseException {
+        reset(path);
+        return parseDocument(containerFactory);
+    }
+
+    /**
+     * Parse a UTF-8 encoded file holding a top-level JSON array, with the
+     * elements parsed concurrently in a pool. The file is memory-mapped and
+     * pre-scanned for the boundaries of the elements, then cut into chunks
+     * parsed by independent scanners. The key cache and the number factory of
+     * this parser are shared by those scanners.
+     *
+     * @param path
+     * @param pool - The pool parsing the chunks.
+     * @return The elements of the array, in order.
+     * @throws IOException
+     * @throws ParseException - With the byte offset of the error as position,
+     * also if the document is not an array.
+     */
+    public JSONArray parseArrayParallel(Path path, ForkJoinPool pool) throws IOException, ParseException {
+        JSONArray array = new JSONArray();
+        parseArrayParallel(path, pool, array::add);
+        return array;
+    }
+
+    /**
+     * Parse a UTF-8 encoded file holding a top-level JSON array, with the
+     * elements parsed concurrently in a pool and handed to the consumer in
+     * order, in the calling thread, as soon as their chunk is parsed. Only a
+     * bounded number of chunks is parsed ahead of the consumer.
+     *
+     * @see #parseArrayParallel(Path, ForkJoinPool)
+     *
+     * @param path
+     * @param pool - The pool parsing the chunks.
+     * @param consumer - Receives the elements of the array.
+     * @throws IOException
+     * @throws ParseException - With the byte offset of the error as position,
+     * also if the document is not an array.
+     */
+    public void parseArrayParallel(Path path, ForkJoinPool pool, Consumer<Object> consumer) throws IOException, ParseException {
+        parseArrayParallel(map(path), MAP_WINDOW, pool, consumer);
+    }
+
+    /**
+     * Parse a range of UTF-8 encoded bytes holding a top-level JSON array,
+     * with the elements parsed concurrently in a pool.
+     *
+     * @see #parseArrayParallel(Path, ForkJoinPool)
+     *
+     * @param b
+     * @param off - Offset of the first byte to parse.
+     * @param len - Number of bytes to parse.
+     * @param pool - The pool parsing the chunks.
+     * @return The elements of the array, in order.
+     * @throws ParseException - With the byte offset of the error as position,
+     * also if the document is not an array.
+     */
+    public JSONArray parseArrayParallel(byte[] b, int off, int len, ForkJoinPool pool) throws ParseException {
+        JSONArray array = new JSONArray();
+        parseArrayParallel(b, off, len, pool, array::add);
+        return array;
+    }
+
+    /**
+     * Parse a range of UTF-8 encoded bytes holding a top-level JSON array,
+     * with the elements handed to the consumer in order.
+     *
+     * @see #parseArrayParallel(Path, ForkJoinPool, Consumer)
+     *
+     * @param b
+     * @param off - Offset of the first byte to parse.
+     * @param len - Number of bytes to parse.
+     * @param pool - The pool parsing the chunks.
+     * @param consumer - Receives the elements of the array.
+     * @throws ParseException - With the byte offset of the error as position,
+     * also if the document is not an array.
+     */
+    public void parseArrayParallel(byte[] b, int off, int len, ForkJoinPool pool, Consumer<Object> consumer) throws ParseException {
+        try {
+            parseArrayParallel(new ByteBuffer[]{ByteBuffer.wrap(b, off, len).slice()}, Integer.MAX_VALUE, pool, consumer);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    private void parseArrayParallel(ByteBuffer[] windows, long windowSize, ForkJoinPool pool, Consumer<Object> consumer) throws IOException, ParseException {
+        ParallelArrayParser parallel = new ParallelArrayParser(windows, windowSize, keyCache, numberFactory, longCache);
+        long[] bounds = parallel.scan(parallel.chunkSize(pool));
+        if (bounds != null) {
+            parallel.parse(bounds, pool, consumer);
+            return;
+        }
+        /*
+         * Not an array: report its first token without parsing the document.
+         */
+        reset(windows);
+        nextToken();
+        if (tokenType != Yytoken.TYPE_LEFT_SQUARE) {
+            throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
+        }
+        /*
+         * Not a well-formed array: parse it sequentially to report the error.
+         */
+        reset(windows);
+        Object value = parseDocument((ContainerFactory) null);
+        ((List<?>) value).forEach(consumer);
+    }
+
+    /**
+     * Parse JSON text into a lazy document. The text is encoded to UTF-8
+     * first, and the views read that copy.
+     *
+     * @see #parseLazy(byte[], int, int)
+     *
+     * @param s
+     * @return Instance of the following: LazyJSONObject, LazyJSONArray,
+     * java.lang.String, java.lang.Number, java.lang.Boolean, null
+     *
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public Object parseLazy(String s) throws ParseException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        return parseLazy(b, 0, b.length);
+    }
+
+    /**
+     * Parse UTF-8 encoded JSON text into a lazy document. A single pass
+     * checks the text and records the position of every token on a tape;
+     * objects and arrays are returned as read-only {@link LazyJSONObject} and
+     * {@link LazyJSONArray} views over it, which decode keys and values only
+     * when they are accessed. Numbers are decoded as {@link #parse(String)}
+     * builds them, so integers too large for a Long are BigInteger.
+     * <p>
+     * The array is not copied and must not be modified while the views are in
+     * use. The key cache and the number factory of this parser are used by the
+     * views.
+     *
+     * @param b
+     * @param off - Offset of the first byte to parse.
+     * @param len - Number of bytes to parse.
+     * @return Instance of the following: LazyJSONObject, LazyJSONArray,
+     * java.lang.String, java.lang.Number, java.lang.Boolean, null
+     *
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public Object parseLazy(byte[] b, int off, int len) throws ParseException {
+        LazyDocument document = LazyDocument.build(b, off, len, keyCache, numberFactory, longCache);
+        if (document == null) {
+            /*
+             * Not well-formed: parse it with the lexer to report the error.
+             */
+            return parse(b, off, len);
+        }
+        return document.value(0);
+    }
+
+    /**
+     * Extract the values selected by JSON paths, reading the document once.
+     * Values outside of the paths are skipped with a bracket and quote
+     * counter: no string, number, object or array is built for them, and
+     * their content is not checked.
+     * <p>
+     * A path starts with $ followed by steps: .name or ['name'] select a
+     * member, [n] an element, and .* or [*] every member or element, as in
+     * "$.meta.id" or "$.items[*].sku".
+     *
+     * @param in
+     * @param jsonPaths
+     * @return A JSONObject mapping every path without a wildcard to its value,
+     * if found, and every path with a wildcard to a JSONArray of the values
+     * found, in document order.
+     *
+     * @throws IOException
+     * @throws ParseException
+     * @throws IllegalArgumentException - If a path is not valid.
+     */
+    public JSONObject extract(Reader in, String... jsonPaths) throws IOException, ParseException {
+        PathExtractor extractor = new PathExtractor(jsonPaths);
+        reset(in);
+        return extract(extractor);
+    }
+
+    /**
+     * Extract the values selected by JSON paths from a range of UTF-8 encoded
+     * bytes.
+     *
+     * @see #extract(Reader, String...)
+     *
+     * @param b
+     * @param off - Offset of the first byte to parse.
+     * @param len - Number of bytes to parse.
+     * @param jsonPaths
+     * @return The values found, keyed by path.
+     * @throws ParseException - With the byte offset of the error as position.
+     * @throws IllegalArgumentException - If a path is not valid.
+     */
+    public JSONObject extract(byte[] b, int off, int len, String... jsonPaths) throws ParseException {
+        PathExtractor extractor = new PathExtractor(jsonPaths);
+        reset(b, off, len);
+        try {
+            return extract(extractor);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    private JSONObject extract(PathExtractor extractor) throws IOException, ParseException {
+        return extractor.extract(new JSONReader(lexer, null));
+    }
+
+    private Object parseDocument(ContainerFactory containerFactory) throws IOException, ParseException {
+        sized = sizeProfile != null || containerFactory instanceof SizedContainerFactory;
         try {
             do {
                 nextToken();
                 switch (status) {
                     case S_INIT:
-                        switch (token.type) {
+                        switch (tokenType) {
                             case Yytoken.TYPE_VALUE:
                                 status = S_IN_FINISHED_VALUE;
-                                statusStack.addFirst(status);
-                                valueStack.addFirst(token.value);
+                                pushStatus(status);
+                                pushValue(lexer.value());
                                 break;
                             case Yytoken.TYPE_LEFT_BRACE:
                                 status = S_IN_OBJECT;
-                                statusStack.addFirst(status);
-                                valueStack.addFirst(createObjectContainer(containerFactory));
+                                pushStatus(status);
+                                pushValue(createObjectContainer(containerFactory, null));
                                 break;
                             case Yytoken.TYPE_LEFT_SQUARE:
                                 status = S_IN_ARRAY;
-                                statusStack.addFirst(status);
-                                valueStack.addFirst(createArrayContainer(containerFactory));
+                                pushStatus(status);
+                                pushValue(createArrayContainer(containerFactory, null));
                                 break;
                             default:
                                 status = S_IN_ERROR;
@@ -136,31 +986,34 @@ public class JSONParser {
                         break;
 
                     case S_IN_FINISHED_VALUE:
-                        if (token.type == Yytoken.TYPE_EOF) {
-                            return valueStack.removeFirst();
+                        if (tokenType == Yytoken.TYPE_EOF) {
+                            return popValue();
                         } else {
-                            throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, token);
+                            throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
                         }
 
                     case S_IN_OBJECT:
-                        switch (token.type) {
+                        switch (tokenType) {
                             case Yytoken.TYPE_COMMA:
                                 break;
                             case Yytoken.TYPE_VALUE:
-                                if (token.value instanceof String) {
-                                    String key = (String) token.value;
-                                    valueStack.addFirst(key);
+                                if (lexer.value() instanceof String) {
+                                    String key = (String) lexer.value();
+                                    pushValue(key);
                                     status = S_PASSED_PAIR_KEY;
-                                    statusStack.addFirst(status);
+                                    pushStatus(status);
                                 } else {
                                     status = S_IN_ERROR;
                                 }
                                 break;
                             case Yytoken.TYPE_RIGHT_BRACE:
-                                if (valueStack.size() > 1) {
-                                    statusStack.removeFirst();
-                                    valueStack.removeFirst();
-                                    status = peekStatus(statusStack);
+                                if (sized) {
+                                    endContainer(((Map) peekValue()).size());
+                                }
+                                if (valueDepth > 1) {
+                                    popStatus();
+                                    popValue();
+                                    status = peekStatus();
                                 } else {
                                     status = S_IN_FINISHED_VALUE;
                                 }
@@ -172,35 +1025,35 @@ public class JSONParser {
                         break;
 
                     case S_PASSED_PAIR_KEY:
-                        switch (token.type) {
+                        switch (tokenType) {
                             case Yytoken.TYPE_COLON:
                                 break;
                             case Yytoken.TYPE_VALUE:
-                                statusStack.removeFirst();
-                                String key = (String) valueStack.removeFirst();
-                                Map parent = (Map) valueStack.getFirst();
-                                parent.put(key, token.value);
-                                status = peekStatus(statusStack);
+                                popStatus();
+                                String key = (String) popValue();
+                                Map parent = (Map) peekValue();
+                                parent.put(key, lexer.value());
+                                status = peekStatus();
                                 break;
                             case Yytoken.TYPE_LEFT_SQUARE:
-                                statusStack.removeFirst();
-                                key = (String) valueStack.removeFirst();
-                                parent = (Map) valueStack.getFirst();
-                                List newArray = createArrayContainer(containerFactory);
+                                popStatus();
+                                key = (String) popValue();
+                                parent = (Map) peekValue();
+                                List newArray = createArrayContainer(containerFactory, key);
                                 parent.put(key, newArray);
                                 status = S_IN_ARRAY;
-                                statusStack.addFirst(status);
-                                valueStack.addFirst(newArray);
+                                pushStatus(status);
+                                pushValue(newArray);
                                 break;
                             case Yytoken.TYPE_LEFT_BRACE:
-                                statusStack.removeFirst();
-                                key = (String) valueStack.removeFirst();
-                                parent = (Map) valueStack.getFirst();
-                                Map newObject = createObjectContainer(containerFactory);
+                                popStatus();
+                                key = (String) popValue();
+                                parent = (Map) peekValue();
+                                Map newObject = createObjectContainer(containerFactory, key);
                                 parent.put(key, newObject);
                                 status = S_IN_OBJECT;
-                                statusStack.addFirst(status);
-                                valueStack.addFirst(newObject);
+                                pushStatus(status);
+                                pushValue(newObject);
                                 break;
                             default:
                                 status = S_IN_ERROR;
@@ -208,66 +1061,139 @@ public class JSONParser {
                         break;
 
                     case S_IN_ARRAY:
-                        switch (token.type) {
+                        switch (tokenType) {
                             case Yytoken.TYPE_COMMA:
                                 break;
                             case Yytoken.TYPE_VALUE:
-                                List val = (List) valueStack.getFirst();
-                                val.add(token.value);
+                                List val = (List) peekValue();
+                                val.add(lexer.value());
                                 break;
                             case Yytoken.TYPE_RIGHT_SQUARE:
-                                if (valueStack.size() > 1) {
-                                    statusStack.removeFirst();
-                                    valueStack.removeFirst();
-                                    status = peekStatus(statusStack);
+                                if (sized) {
+                                    endContainer(((List) peekValue()).size());
+                                }
+                                if (valueDepth > 1) {
+                                    popStatus();
+                                    popValue();
+                                    status = peekStatus();
                                 } else {
                                     status = S_IN_FINISHED_VALUE;
                                 }
                                 break;
                             case Yytoken.TYPE_LEFT_BRACE:
-                                val = (List) valueStack.getFirst();
-                                Map newObject = createObjectContainer(containerFactory);
+                                val = (List) peekValue();
+                                Map newObject = createObjectContainer(containerFactory, null);
                                 val.add(newObject);
                                 status = S_IN_OBJECT;
-                                statusStack.addFirst(status);
-                                valueStack.addFirst(newObject);
+                                pushStatus(status);
+                                pushValue(newObject);
                                 break;
                             case Yytoken.TYPE_LEFT_SQUARE:
-                                val = (List) valueStack.getFirst();
-                                List newArray = createArrayContainer(containerFactory);
+                                val = (List) peekValue();
+                                List newArray = createArrayContainer(containerFactory, null);
                                 val.add(newArray);
                                 status = S_IN_ARRAY;
-                                statusStack.addFirst(new Integer(status));
-                                valueStack.addFirst(newArray);
+                                pushStatus(status);
+                                pushValue(newArray);
                                 break;
                             default:
                                 status = S_IN_ERROR;
                         }//inner switch
                         break;
                     case S_IN_ERROR:
-                        throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, token);
+                        throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
                     default:
                         break;
                 }//switch
                 if (status == S_IN_ERROR) {
-                    throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, token);
+                    throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
                 }
-            } while (token.type != Yytoken.TYPE_EOF);
+            } while (tokenType != Yytoken.TYPE_EOF);
         } catch (IOException ie) {
             throw ie;
         }
 
-        throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, token);
+        throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
     }
 
-    private void nextToken() throws ParseException, IOException {
-        token = lexer.yylex();
-        if (token == null) {
-            token = new Yytoken(Yytoken.TYPE_EOF, null);
+    /**
+     * Skip the value being started, without building its strings, numbers
+     * and nested containers, nor notifying the handler about them. To be
+     * called by a ContentHandler from:
+     * <ul>
+     * <li>{@link ContentHandler#startObjectEntry(String)}, to skip the value
+     * of the entry; endObjectEntry() follows.</li>
+     * <li>{@link ContentHandler#startObject()} or
+     * {@link ContentHandler#startArray()}, to skip the content of the object
+     * or array; endObject() or endArray() follows.</li>
+     * </ul>
+     * The skipped text is scanned by a lightweight bracket and quote counter
+     * and is not checked. Calls from other callbacks are ignored.
+     */
+    public void skipValue() {
+        skipRequested = true;
+    }
+
+    /**
+     * Skip the content of the object or array just started if the handler
+     * asked for it, leaving its closing bracket as the next token.
+     *
+     * @param proceed - The value returned by the callback.
+     * @return proceed
+     */
+    private boolean skipContent(boolean proceed) throws ParseException, IOException {
+        if (skipRequested) {
+            skipRequested = false;
+            int c;
+            while ((c = lexer.skipValue()) != -1 && c != ']' && c != '}') {
+                if (c == ',' || c == ':') {
+                    nextToken();
+                }
+            }
+        }
+        return proceed;
+    }
+
+    /**
+     * Skip the value of the object entry just started if the handler asked
+     * for it. The end of the entry is then notified in S_IN_PAIR_VALUE.
+     *
+     * @param proceed - The value returned by the callback.
+     * @return proceed
+     */
+    private boolean skipEntryValue(boolean proceed) throws ParseException, IOException {
+        if (skipRequested) {
+            skipRequested = false;
+            int c;
+            while ((c = lexer.skipValue()) == ':') {
+                nextToken();
+            }
+            if (c != -1 && c != ',' && c != ']' && c != '}') {
+                popStatus();
+                pushStatus(S_IN_PAIR_VALUE);
+                status = S_IN_PAIR_VALUE;
+            }
         }
+        return proceed;
     }
 
-    private Map createObjectContainer(ContainerFactory containerFactory) {
+    private void nextToken() throws ParseException, IOException {
+        skipRequested = false;
+        lexer.keyExpected = status == S_IN_OBJECT;
+        tokenType = lexer.yylex();
+    }
+
+    private Map createObjectContainer(ContainerFactory containerFactory, String key) {
+        if (sized) {
+            int hint = startContainer(key);
+            Map m = null;
+            if (containerFactory instanceof SizedContainerFactory) {
+                m = ((SizedContainerFactory) containerFactory).createObjectContainer(pathDepth - 1, key, hint);
+            } else if (containerFactory != null) {
+                m = containerFactory.createObjectContainer();
+            }
+            return m != null ? m : hint > 0 ? new JSONObject(hint) : new JSONObject();
+        }
         if (containerFactory == null) {
             return new JSONObject();
         }
@@ -279,7 +1205,17 @@ public class JSONParser {
         return m;
     }
 
-    private List createArrayContainer(ContainerFactory containerFactory) {
+    private List createArrayContainer(ContainerFactory containerFactory, String key) {
+        if (sized) {
+            int hint = startContainer(key);
+            List l = null;
+            if (containerFactory instanceof SizedContainerFactory) {
+                l = ((SizedContainerFactory) containerFactory).createArrayContainer(pathDepth - 1, key, hint);
+            } else if (containerFactory != null) {
+                l = containerFactory.creatArrayContainer();
+            }
+            return l != null ? l : hint > 0 ? new JSONArray(hint) : new JSONArray();
+        }
         if (containerFactory == null) {
             return new JSONArray();
         }
@@ -291,14 +1227,42 @@ public class JSONParser {
         return l;
     }
 
+    /**
+     * Push the path of a container being created.
+     *
+     * @param key - The key of the container in its parent object, or null.
+     * @return The size learned for the path, or 0.
+     */
+    private int startContainer(String key) {
+        int path = pathDepth == 0 ? SizeProfile.ROOT : SizeProfile.path(pathStack[pathDepth - 1], key);
+        if (pathDepth == pathStack.length) {
+            pathStack = Arrays.copyOf(pathStack, pathDepth * 2);
+        }
+        pathStack[pathDepth++] = path;
+        return sizeProfile != null ? sizeProfile.hint(path) : 0;
+    }
+
+    /**
+     * Pop the path of a completed container and learn its size.
+     */
+    private void endContainer(int size) {
+        int path = pathStack[--pathDepth];
+        if (sizeProfile != null) {
+            sizeProfile.record(path, size);
+        }
+    }
+
     public void parse(String s, ContentHandler contentHandler) throws ParseException {
         parse(s, contentHandler, false);
     }
 
     public void parse(String s, ContentHandler contentHandler, boolean isResume) throws ParseException {
-        StringReader in = new StringReader(s);
+        if (!isResume || !handlerActive) {
+            reset(s);
+            handlerActive = true;
+        }
         try {
-            parse(in, contentHandler, isResume);
+            parseDocument(contentHandler);
         } catch (IOException ie) {
             /*
              * Actually it will never happen.
@@ -329,42 +1293,123 @@ public class JSONParser {
     public void parse(Reader in, ContentHandler contentHandler, boolean isResume) throws IOException, ParseException {
         if (!isResume) {
             reset(in);
-            handlerStatusStack = new LinkedList();
+            handlerActive = true;
         } else {
-            if (handlerStatusStack == null) {
+            if (!handlerActive) {
                 isResume = false;
                 reset(in);
-                handlerStatusStack = new LinkedList();
+                handlerActive = true;
             }
         }
+        parseDocument(contentHandler);
+    }
+
+    public void parse(char[] b, int off, int len, ContentHandler contentHandler) throws ParseException {
+        reset(b, off, len);
+        handlerActive = true;
+        try {
+            parseDocument(contentHandler);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    public void parse(byte[] b, int off, int len, ContentHandler contentHandler) throws ParseException {
+        reset(b, off, len);
+        handlerActive = true;
+        try {
+            parseDocument(contentHandler);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
 
-        LinkedList statusStack = handlerStatusStack;
+    /**
+     * Stream processing of UTF-8 encoded JSON text. Call
+     * {@link #parse(Reader, ContentHandler, boolean)} with isResume set to
+     * true to continue after the handler stopped.
+     *
+     * @see ContentHandler
+     *
+     * @param in
+     * @param contentHandler
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    public void parse(InputStream in, ContentHandler contentHandler) throws IOException, ParseException {
+        reset(in);
+        handlerActive = true;
+        parseDocument(contentHandler);
+    }
+
+    public void parse(ByteBuffer bb, ContentHandler contentHandler) throws ParseException {
+        reset(bb);
+        handlerActive = true;
+        try {
+            parseDocument(contentHandler);
+        } catch (IOException ie) {
+            /*
+             * Actually it will never happen.
+             */
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, ie);
+        }
+    }
+
+    /**
+     * Stream processing of a UTF-8 encoded JSON file. The file is
+     * memory-mapped, so even multi-gigabyte documents are read through the
+     * page cache without system calls or char decoding. Call
+     * {@link #parse(Reader, ContentHandler, boolean)} with isResume set to
+     * true to continue after the handler stopped.
+     *
+     * @see #reset(Path)
+     * @see ContentHandler
+     *
+     * @param path
+     * @param contentHandler
+     *
+     * @throws IOException
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public void parseFile(Path path, ContentHandler contentHandler) throws IOException, ParseException {
+        reset(path);
+        handlerActive = true;
+        parseDocument(contentHandler);
+    }
 
+    private void parseDocument(ContentHandler contentHandler) throws IOException, ParseException {
         try {
             do {
                 switch (status) {
                     case S_INIT:
                         contentHandler.startJSON();
                         nextToken();
-                        switch (token.type) {
+                        switch (tokenType) {
                             case Yytoken.TYPE_VALUE:
                                 status = S_IN_FINISHED_VALUE;
-                                statusStack.addFirst(status);
-                                if (!contentHandler.primitive(token.value)) {
+                                pushStatus(status);
+                                if (!contentHandler.primitive(lexer.value())) {
                                     return;
                                 }
                                 break;
                             case Yytoken.TYPE_LEFT_BRACE:
                                 status = S_IN_OBJECT;
-                                statusStack.addFirst(status);
-                                if (!contentHandler.startObject()) {
+                                pushStatus(status);
+                                if (!skipContent(contentHandler.startObject())) {
                                     return;
                                 }
                                 break;
                             case Yytoken.TYPE_LEFT_SQUARE:
                                 status = S_IN_ARRAY;
-                                statusStack.addFirst(status);
-                                if (!contentHandler.startArray()) {
+                                pushStatus(status);
+                                if (!skipContent(contentHandler.startArray())) {
                                     return;
                                 }
                                 break;
@@ -375,26 +1420,26 @@ public class JSONParser {
 
                     case S_IN_FINISHED_VALUE:
                         nextToken();
-                        if (token.type == Yytoken.TYPE_EOF) {
+                        if (tokenType == Yytoken.TYPE_EOF) {
                             contentHandler.endJSON();
                             status = S_END;
                             return;
                         } else {
                             status = S_IN_ERROR;
-                            throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, token);
+                            throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
                         }
 
                     case S_IN_OBJECT:
                         nextToken();
-                        switch (token.type) {
+                        switch (tokenType) {
                             case Yytoken.TYPE_COMMA:
                                 break;
                             case Yytoken.TYPE_VALUE:
-                                if (token.value instanceof String) {
-                                    String key = (String) token.value;
+                                if (lexer.value() instanceof String) {
+                                    String key = (String) lexer.value();
                                     status = S_PASSED_PAIR_KEY;
-                                    statusStack.addFirst(status);
-                                    if (!contentHandler.startObjectEntry(key)) {
+                                    pushStatus(status);
+                                    if (!skipEntryValue(contentHandler.startObjectEntry(key))) {
                                         return;
                                     }
                                 } else {
@@ -402,9 +1447,9 @@ public class JSONParser {
                                 }
                                 break;
                             case Yytoken.TYPE_RIGHT_BRACE:
-                                if (statusStack.size() > 1) {
-                                    statusStack.removeFirst();
-                                    status = peekStatus(statusStack);
+                                if (statusDepth > 1) {
+                                    popStatus();
+                                    status = peekStatus();
                                 } else {
                                     status = S_IN_FINISHED_VALUE;
                                 }
@@ -420,13 +1465,13 @@ public class JSONParser {
 
                     case S_PASSED_PAIR_KEY:
                         nextToken();
-                        switch (token.type) {
+                        switch (tokenType) {
                             case Yytoken.TYPE_COLON:
                                 break;
                             case Yytoken.TYPE_VALUE:
-                                statusStack.removeFirst();
-                                status = peekStatus(statusStack);
-                                if (!contentHandler.primitive(token.value)) {
+                                popStatus();
+                                status = peekStatus();
+                                if (!contentHandler.primitive(lexer.value())) {
                                     return;
                                 }
                                 if (!contentHandler.endObjectEntry()) {
@@ -434,20 +1479,20 @@ public class JSONParser {
                                 }
                                 break;
                             case Yytoken.TYPE_LEFT_SQUARE:
-                                statusStack.removeFirst();
-                                statusStack.addFirst(S_IN_PAIR_VALUE);
+                                popStatus();
+                                pushStatus(S_IN_PAIR_VALUE);
                                 status = S_IN_ARRAY;
-                                statusStack.addFirst(status);
-                                if (!contentHandler.startArray()) {
+                                pushStatus(status);
+                                if (!skipContent(contentHandler.startArray())) {
                                     return;
                                 }
                                 break;
                             case Yytoken.TYPE_LEFT_BRACE:
-                                statusStack.removeFirst();
-                                statusStack.addFirst(S_IN_PAIR_VALUE);
+                                popStatus();
+                                pushStatus(S_IN_PAIR_VALUE);
                                 status = S_IN_OBJECT;
-                                statusStack.addFirst(status);
-                                if (!contentHandler.startObject()) {
+                                pushStatus(status);
+                                if (!skipContent(contentHandler.startObject())) {
                                     return;
                                 }
                                 break;
@@ -461,8 +1506,8 @@ public class JSONParser {
 			 * S_IN_PAIR_VALUE is just a marker to indicate the end of an object entry, it doesn't proccess any token,
 			 * therefore delay consuming token until next round.
                          */
-                        statusStack.removeFirst();
-                        status = peekStatus(statusStack);
+                        popStatus();
+                        status = peekStatus();
                         if (!contentHandler.endObjectEntry()) {
                             return;
                         }
@@ -470,18 +1515,18 @@ public class JSONParser {
 
                     case S_IN_ARRAY:
                         nextToken();
-                        switch (token.type) {
+                        switch (tokenType) {
                             case Yytoken.TYPE_COMMA:
                                 break;
                             case Yytoken.TYPE_VALUE:
-                                if (!contentHandler.primitive(token.value)) {
+                                if (!contentHandler.primitive(lexer.value())) {
                                     return;
                                 }
                                 break;
                             case Yytoken.TYPE_RIGHT_SQUARE:
-                                if (statusStack.size() > 1) {
-                                    statusStack.removeFirst();
-                                    status = peekStatus(statusStack);
+                                if (statusDepth > 1) {
+                                    popStatus();
+                                    status = peekStatus();
                                 } else {
                                     status = S_IN_FINISHED_VALUE;
                                 }
@@ -491,15 +1536,15 @@ public class JSONParser {
                                 break;
                             case Yytoken.TYPE_LEFT_BRACE:
                                 status = S_IN_OBJECT;
-                                statusStack.addFirst(status);
-                                if (!contentHandler.startObject()) {
+                                pushStatus(status);
+                                if (!skipContent(contentHandler.startObject())) {
                                     return;
                                 }
                                 break;
                             case Yytoken.TYPE_LEFT_SQUARE:
                                 status = S_IN_ARRAY;
-                                statusStack.addFirst(status);
-                                if (!contentHandler.startArray()) {
+                                pushStatus(status);
+                                if (!skipContent(contentHandler.startArray())) {
                                     return;
                                 }
                                 break;
@@ -512,15 +1557,15 @@ public class JSONParser {
                         return;
 
                     case S_IN_ERROR:
-                        throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, token);
+                        throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
 
                     default:
                         break;
                 }//switch
                 if (status == S_IN_ERROR) {
-                    throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, token);
+                    throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
                 }
-            } while (token.type != Yytoken.TYPE_EOF);
+            } while (tokenType != Yytoken.TYPE_EOF);
         } catch (IOException ie) {
             status = S_IN_ERROR;
             throw ie;
@@ -536,7 +1581,7 @@ public class JSONParser {
         }
 
         status = S_IN_ERROR;
-        throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, token);
+        throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, lexer.unexpectedToken());
     }
 
     public JSONObject parseAsObject(String s) throws ParseException {
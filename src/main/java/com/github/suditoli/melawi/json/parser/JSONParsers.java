@@ -0,0 +1,261 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.JSONArray;
+import com.github.suditoli.melawi.json.JSONObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe facade over a bounded pool of {@link JSONParser} instances.
+ * Each call borrows an idle parser, or creates one, and hands it back once
+ * the input is parsed, so the lexer buffers are reused across calls and
+ * threads.
+ * <p>
+ * The pool is a fixed array of slots claimed with compare-and-set. It neither
+ * blocks nor relies on ThreadLocal, so it stays bounded and cheap with any
+ * number of threads, virtual threads included. Parsers whose buffers grew
+ * beyond the retained capacity, and parsers handed back while every slot is
+ * taken, are left to the garbage collector.
+ * <p>
+ * Parsing with a ContentHandler through this facade cannot be resumed after
+ * the handler stops; borrow a parser for that.
+ *
+ * @see JSONParser
+ */
+public class JSONParsers {
+
+    /**
+     * Default buffer capacity, in bytes or chars, above which a parser is not
+     * kept.
+     */
+    public static final int DEFAULT_MAX_CAPACITY = 256 * 1024;
+
+    private static final JSONParsers SHARED = new JSONParsers(Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * A unit of work run with a borrowed parser.
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface ParserFunction<T> {
+
+        T apply(JSONParser parser) throws IOException, ParseException;
+    }
+
+    private final AtomicReferenceArray<JSONParser> idle;
+    private final int maxCapacity;
+    private final Supplier<JSONParser> factory;
+
+    /**
+     * @param maxIdle - Maximum number of idle parsers kept.
+     */
+    public JSONParsers(int maxIdle) {
+        this(maxIdle, DEFAULT_MAX_CAPACITY, JSONParser::new);
+    }
+
+    /**
+     * @param maxIdle - Maximum number of idle parsers kept.
+     * @param maxCapacity - Buffer capacity, in bytes or chars, above which a
+     * parser is not kept.
+     * @param factory - Creates the parsers, for instance with a specific
+     * configuration.
+     */
+    public JSONParsers(int maxIdle, int maxCapacity, Supplier<JSONParser> factory) {
+        this.idle = new AtomicReferenceArray<>(Math.max(1, maxIdle));
+        this.maxCapacity = maxCapacity;
+        this.factory = factory;
+    }
+
+    /**
+     * @return The pool shared by the whole application, keeping up to two
+     * idle parsers per available processor.
+     */
+    public static JSONParsers shared() {
+        return SHARED;
+    }
+
+    /**
+     * Take an idle parser out of the pool, or create a new one. The parser
+     * belongs to the caller until it is given back with
+     * {@link #release(JSONParser)}.
+     *
+     * @return A parser in its initial state.
+     */
+    public JSONParser borrow() {
+        int n = idle.length();
+        int start = slot(n);
+        for (int i = 0; i < n; i++) {
+            int index = (start + i) % n;
+            if (idle.get(index) != null) {
+                JSONParser parser = idle.getAndSet(index, null);
+                if (parser != null) {
+                    return parser;
+                }
+            }
+        }
+        JSONParser parser = factory.get();
+        parser.savePooledSettings();
+        return parser;
+    }
+
+    /**
+     * Give a borrowed parser back. The parser is reset, with the settings it
+     * had when it was created, and must not be used by the caller
+     * afterwards. Parsers that were not borrowed from a pool are not kept.
+     *
+     * @param parser
+     */
+    public void release(JSONParser parser) {
+        if (!parser.recycle(maxCapacity)) {
+            return;
+        }
+        int n = idle.length();
+        int start = slot(n);
+        for (int i = 0; i < n; i++) {
+            int index = (start + i) % n;
+            if (idle.get(index) == null && idle.compareAndSet(index, null, parser)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Spread the threads over the slots to limit contention.
+     */
+    private static int slot(int n) {
+        return (int) (Thread.currentThread().getId() % n);
+    }
+
+    /**
+     * Run a unit of work with a borrowed parser.
+     *
+     * @param <T>
+     * @param function
+     * @return The result of the function.
+     * @throws IOException
+     * @throws ParseException
+     */
+    public <T> T apply(ParserFunction<T> function) throws IOException, ParseException {
+        JSONParser parser = borrow();
+        try {
+            return function.apply(parser);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public Object parse(String s) throws ParseException {
+        return parse(s, (ContainerFactory) null);
+    }
+
+    public Object parse(String s, ContainerFactory containerFactory) throws ParseException {
+        JSONParser parser = borrow();
+        try {
+            return parser.parse(s, containerFactory);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public Object parse(Reader in) throws IOException, ParseException {
+        return parse(in, (ContainerFactory) null);
+    }
+
+    public Object parse(Reader in, ContainerFactory containerFactory) throws IOException, ParseException {
+        JSONParser parser = borrow();
+        try {
+            return parser.parse(in, containerFactory);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public Object parse(byte[] b, int off, int len) throws ParseException {
+        return parse(b, off, len, (ContainerFactory) null);
+    }
+
+    public Object parse(byte[] b, int off, int len, ContainerFactory containerFactory) throws ParseException {
+        JSONParser parser = borrow();
+        try {
+            return parser.parse(b, off, len, containerFactory);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public Object parse(InputStream in) throws IOException, ParseException {
+        return parse(in, (ContainerFactory) null);
+    }
+
+    public Object parse(InputStream in, ContainerFactory containerFactory) throws IOException, ParseException {
+        JSONParser parser = borrow();
+        try {
+            return parser.parse(in, containerFactory);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public Object parse(ByteBuffer bb) throws ParseException {
+        return parse(bb, (ContainerFactory) null);
+    }
+
+    public Object parse(ByteBuffer bb, ContainerFactory containerFactory) throws ParseException {
+        JSONParser parser = borrow();
+        try {
+            return parser.parse(bb, containerFactory);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public Object parseFile(Path path) throws IOException, ParseException {
+        JSONParser parser = borrow();
+        try {
+            return parser.parseFile(path);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public void parse(String s, ContentHandler contentHandler) throws ParseException {
+        JSONParser parser = borrow();
+        try {
+            parser.parse(s, contentHandler);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public void parse(Reader in, ContentHandler contentHandler) throws IOException, ParseException {
+        JSONParser parser = borrow();
+        try {
+            parser.parse(in, contentHandler);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public void parse(InputStream in, ContentHandler contentHandler) throws IOException, ParseException {
+        JSONParser parser = borrow();
+        try {
+            parser.parse(in, contentHandler);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public JSONObject parseAsObject(String s) throws ParseException {
+        return (JSONObject) parse(s);
+    }
+
+    public JSONArray parseAsArray(String s) throws ParseException {
+        return (JSONArray) parse(s);
+    }
+}
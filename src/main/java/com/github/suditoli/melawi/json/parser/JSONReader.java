@@ -0,0 +1,527 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.JSONArray;
+import com.github.suditoli.melawi.json.JSONException;
+import com.github.suditoli.melawi.json.JSONObject;
+import com.github.suditoli.melawi.json.LazyNumber;
+import com.github.suditoli.melawi.json.StringSlice;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Pull parser reading JSON text one token at a time. The caller moves the
+ * cursor with {@link #nextToken()} and reads the current token with the
+ * accessors, so a document can be consumed record by record without a
+ * callback state machine.
+ * <p>
+ * The reader accepts the same input as {@link JSONParser} and reads each
+ * token from its scanner without creating an object for it. Please note that
+ * JSONReader is NOT thread-safe.
+ *
+ * <pre>
+ * try (JSONReader reader = new JSONReader(in)) {
+ *     reader.nextToken(); // START_ARRAY
+ *     while (reader.nextToken() == JSONReader.START_OBJECT) {
+ *         JSONObject record = (JSONObject) reader.readValue();
+ *     }
+ * }
+ * </pre>
+ */
+public class JSONReader implements Closeable {
+
+    public static final int END_DOCUMENT = -1;
+    public static final int START_OBJECT = 0;
+    public static final int END_OBJECT = 1;
+    public static final int START_ARRAY = 2;
+    public static final int END_ARRAY = 3;
+    public static final int FIELD_NAME = 4;
+    public static final int VALUE_STRING = 5;
+    public static final int VALUE_NUMBER = 6;
+    public static final int VALUE_TRUE = 7;
+    public static final int VALUE_FALSE = 8;
+    public static final int VALUE_NULL = 9;
+
+    /**
+     * Initial capacity of the container stack.
+     */
+    private static final int INITIAL_DEPTH = 16;
+
+    private final Lexer lexer;
+    private final Closeable source;
+
+    /**
+     * S_IN_OBJECT or S_IN_ARRAY for every open container
+     */
+    private int[] statusStack = new int[INITIAL_DEPTH];
+
+    /**
+     * the last field name read in every open container, at index depth
+     */
+    private String[] nameStack = new String[INITIAL_DEPTH + 1];
+    private int depth;
+    private int status = JSONParser.S_INIT;
+    private int currentToken = END_DOCUMENT;
+    private Object value;
+
+    /**
+     * true to accept a sequence of values separated by whitespace
+     */
+    boolean valueSequence;
+
+    /**
+     * true if the input is the inside of an array opened by openArray()
+     */
+    private boolean implicitArray;
+
+    public JSONReader(String s) {
+        this(charLexer(s), null);
+    }
+
+    public JSONReader(Reader in) {
+        this(new Yylex(in), in);
+    }
+
+    /**
+     * @param in - UTF-8 encoded JSON text.
+     */
+    public JSONReader(InputStream in) {
+        this(utf8Lexer(in), in);
+    }
+
+    /**
+     * @param b - UTF-8 encoded JSON text.
+     * @param off
+     * @param len
+     */
+    public JSONReader(byte[] b, int off, int len) {
+        this(utf8Lexer(b, off, len), null);
+    }
+
+    JSONReader(Lexer lexer, Closeable source) {
+        this.lexer = lexer;
+        this.source = source;
+    }
+
+    private static Lexer charLexer(String s) {
+        Yylex lexer = new Yylex((Reader) null);
+        lexer.yyreset(s);
+        return lexer;
+    }
+
+    private static Lexer utf8Lexer(InputStream in) {
+        Utf8Lexer lexer = new Utf8Lexer();
+        lexer.yyreset(in);
+        return lexer;
+    }
+
+    private static Lexer utf8Lexer(byte[] b, int off, int len) {
+        Utf8Lexer lexer = new Utf8Lexer();
+        lexer.yyreset(b, off, len);
+        return lexer;
+    }
+
+    /**
+     * Canonicalize field names through a cache.
+     *
+     * @param keyCache - The cache to use, or null.
+     * @see JSONParser#setKeyCache(KeyCache)
+     */
+    public void setKeyCache(KeyCache keyCache) {
+        lexer.keyCache = keyCache;
+    }
+
+    /**
+     * @param numberFactory - The factory to use, or null for Long and Double.
+     * @see JSONParser#setNumberFactory(NumberFactory)
+     */
+    public void setNumberFactory(NumberFactory numberFactory) {
+        lexer.numberFactory = numberFactory;
+    }
+
+    /**
+     * @param longCache - The cache to use, or null.
+     * @see JSONParser#setLongCache(LongCache)
+     */
+    public void setLongCache(LongCache longCache) {
+        lexer.longCache = longCache;
+    }
+
+    /**
+     * Move the cursor to the next token.
+     *
+     * @return The type of the token, END_DOCUMENT once the whole input has
+     * been read.
+     * @throws IOException
+     * @throws ParseException
+     */
+    public int nextToken() throws IOException, ParseException {
+        while (true) {
+            lexer.keyExpected = status == JSONParser.S_IN_OBJECT;
+            int type = lexer.yylex();
+            Object tokenValue = lexer.value();
+            switch (status) {
+                case JSONParser.S_IN_FINISHED_VALUE:
+                    if (type == Yytoken.TYPE_EOF) {
+                        value = null;
+                        return currentToken = END_DOCUMENT;
+                    }
+                    if (!valueSequence) {
+                        throw unexpected(type, tokenValue);
+                    }
+                    status = JSONParser.S_INIT;
+                // the token starts the next value of the sequence
+                case JSONParser.S_INIT:
+                    switch (type) {
+                        case Yytoken.TYPE_VALUE:
+                            status = JSONParser.S_IN_FINISHED_VALUE;
+                            return value(tokenValue);
+                        case Yytoken.TYPE_LEFT_BRACE:
+                            return startContainer(JSONParser.S_IN_OBJECT, START_OBJECT);
+                        case Yytoken.TYPE_LEFT_SQUARE:
+                            return startContainer(JSONParser.S_IN_ARRAY, START_ARRAY);
+                        default:
+                            throw unexpected(type, tokenValue);
+                    }
+
+                case JSONParser.S_IN_OBJECT:
+                    switch (type) {
+                        case Yytoken.TYPE_COMMA:
+                            break;
+                        case Yytoken.TYPE_VALUE:
+                            if (!(tokenValue instanceof String)) {
+                                throw unexpected(type, tokenValue);
+                            }
+                            nameStack[depth] = (String) tokenValue;
+                            value = tokenValue;
+                            status = JSONParser.S_PASSED_PAIR_KEY;
+                            return currentToken = FIELD_NAME;
+                        case Yytoken.TYPE_RIGHT_BRACE:
+                            return endContainer(END_OBJECT);
+                        default:
+                            throw unexpected(type, tokenValue);
+                    }
+                    break;
+
+                case JSONParser.S_PASSED_PAIR_KEY:
+                    switch (type) {
+                        case Yytoken.TYPE_COLON:
+                            break;
+                        case Yytoken.TYPE_VALUE:
+                            status = JSONParser.S_IN_OBJECT;
+                            return value(tokenValue);
+                        case Yytoken.TYPE_LEFT_BRACE:
+                            return startContainer(JSONParser.S_IN_OBJECT, START_OBJECT);
+                        case Yytoken.TYPE_LEFT_SQUARE:
+                            return startContainer(JSONParser.S_IN_ARRAY, START_ARRAY);
+                        default:
+                            throw unexpected(type, tokenValue);
+                    }
+                    break;
+
+                case JSONParser.S_IN_ARRAY:
+                    switch (type) {
+                        case Yytoken.TYPE_COMMA:
+                            break;
+                        case Yytoken.TYPE_VALUE:
+                            return value(tokenValue);
+                        case Yytoken.TYPE_RIGHT_SQUARE:
+                            return endContainer(END_ARRAY);
+                        case Yytoken.TYPE_EOF:
+                            if (implicitArray && depth == 1) {
+                                value = null;
+                                return currentToken = END_DOCUMENT;
+                            }
+                            throw unexpected(type, tokenValue);
+                        case Yytoken.TYPE_LEFT_BRACE:
+                            return startContainer(JSONParser.S_IN_OBJECT, START_OBJECT);
+                        case Yytoken.TYPE_LEFT_SQUARE:
+                            return startContainer(JSONParser.S_IN_ARRAY, START_ARRAY);
+                        default:
+                            throw unexpected(type, tokenValue);
+                    }
+                    break;
+
+                default:
+                    throw unexpected(type, tokenValue);
+            }
+        }
+    }
+
+    /**
+     * Read the input as the elements of an array whose brackets are not part
+     * of it, ending with END_DOCUMENT after the last element.
+     */
+    void openArray() {
+        startContainer(JSONParser.S_IN_ARRAY, START_ARRAY);
+        implicitArray = true;
+    }
+
+    private int value(Object tokenValue) {
+        value = tokenValue;
+        if (tokenValue instanceof String || tokenValue instanceof StringSlice) {
+            return currentToken = VALUE_STRING;
+        } else if (tokenValue instanceof Number) {
+            return currentToken = VALUE_NUMBER;
+        } else if (tokenValue == null) {
+            return currentToken = VALUE_NULL;
+        }
+        return currentToken = (Boolean) tokenValue ? VALUE_TRUE : VALUE_FALSE;
+    }
+
+    private int startContainer(int containerStatus, int startToken) {
+        if (depth == statusStack.length) {
+            statusStack = Arrays.copyOf(statusStack, depth * 2);
+            nameStack = Arrays.copyOf(nameStack, depth * 2 + 1);
+        }
+        statusStack[depth++] = containerStatus;
+        nameStack[depth] = null;
+        status = containerStatus;
+        value = null;
+        return currentToken = startToken;
+    }
+
+    private int endContainer(int endToken) {
+        nameStack[depth--] = null;
+        status = depth > 0 ? statusStack[depth - 1] : JSONParser.S_IN_FINISHED_VALUE;
+        value = null;
+        return currentToken = endToken;
+    }
+
+    private ParseException unexpected(int type, Object tokenValue) {
+        return new ParseException(lexer.getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, new Yytoken(type, tokenValue));
+    }
+
+    /**
+     * @return The type of the current token, END_DOCUMENT before the first
+     * call to {@link #nextToken()}.
+     */
+    public int currentToken() {
+        return currentToken;
+    }
+
+    /**
+     * @return The field name of the current token: the name itself for
+     * FIELD_NAME, the name of the value otherwise, or null outside of an
+     * object.
+     */
+    public String currentName() {
+        if (currentToken == START_OBJECT || currentToken == START_ARRAY) {
+            return nameStack[depth - 1];
+        }
+        return nameStack[depth];
+    }
+
+    /**
+     * @return The number of open objects and arrays.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return The position of the current token in the input, in chars or in
+     * bytes for UTF-8 input.
+     */
+    public int getPosition() {
+        return lexer.getPosition();
+    }
+
+    /**
+     * @return The value of the current token: a String, Number, Boolean, or
+     * null for containers and JSON null. Strings are StringSlice instances
+     * when they come from a parser returning string slices.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    public String getString() {
+        if (currentToken != VALUE_STRING && currentToken != FIELD_NAME) {
+            throw wrongToken("a string");
+        }
+        return value.toString();
+    }
+
+    public Number getNumber() {
+        if (currentToken != VALUE_NUMBER) {
+            throw wrongToken("a number");
+        }
+        return (Number) value;
+    }
+
+    public long getLong() {
+        return getNumber().longValue();
+    }
+
+    public int getInt() {
+        return getNumber().intValue();
+    }
+
+    public double getDouble() {
+        return getNumber().doubleValue();
+    }
+
+    public boolean getBoolean() {
+        if (currentToken != VALUE_TRUE && currentToken != VALUE_FALSE) {
+            throw wrongToken("a boolean");
+        }
+        return currentToken == VALUE_TRUE;
+    }
+
+    JSONException wrongToken(String expected) {
+        return new JSONException("The current token at position " + getPosition() + " is not " + expected + ".");
+    }
+
+    /**
+     * Skip the next value with {@link Lexer#skipValue()}, without building
+     * it, when the cursor is before a value: at the start of the document, on
+     * a FIELD_NAME, or inside an array. The current token is not changed.
+     *
+     * @return false if the next token is not a value; it is then left for
+     * {@link #nextToken()}, which reports it if it is unexpected.
+     * @throws IOException
+     * @throws ParseException
+     */
+    boolean skipValue() throws IOException, ParseException {
+        while (true) {
+            int c = lexer.skipValue();
+            if (c == ':' && status == JSONParser.S_PASSED_PAIR_KEY || c == ',' && status == JSONParser.S_IN_ARRAY) {
+                lexer.yylex();
+                continue;
+            }
+            if (c == -1 || c == ',' || c == ':' || c == ']' || c == '}') {
+                return false;
+            }
+            switch (status) {
+                case JSONParser.S_INIT:
+                    status = JSONParser.S_IN_FINISHED_VALUE;
+                    break;
+                case JSONParser.S_PASSED_PAIR_KEY:
+                    status = JSONParser.S_IN_OBJECT;
+                    break;
+                case JSONParser.S_IN_ARRAY:
+                    break;
+                default:
+                    throw unexpected(Yytoken.TYPE_VALUE, null);
+            }
+            value = null;
+            return true;
+        }
+    }
+
+    /**
+     * Skip the children of the current object or array, leaving the cursor on
+     * its END_OBJECT or END_ARRAY token. Does nothing on other tokens.
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    public void skipChildren() throws IOException, ParseException {
+        if (currentToken != START_OBJECT && currentToken != START_ARRAY) {
+            return;
+        }
+        int target = depth - 1;
+        do {
+            nextToken();
+        } while (depth > target);
+    }
+
+    /**
+     * Read the value at the cursor, building a JSONObject or JSONArray for
+     * containers. The cursor is left on the last token of the value.
+     *
+     * @return The value, null on tokens that do not start a value.
+     * @throws IOException
+     * @throws ParseException
+     */
+    public Object readValue() throws IOException, ParseException {
+        switch (currentToken) {
+            case START_OBJECT:
+                JSONObject object = new JSONObject();
+                while (nextToken() == FIELD_NAME) {
+                    String key = (String) value;
+                    nextToken();
+                    object.put(key, readValue());
+                }
+                return object;
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                while (nextToken() != END_ARRAY) {
+                    array.add(readValue());
+                }
+                return array;
+            case FIELD_NAME:
+                return null;
+            default:
+                return exactFractions() && value instanceof LazyNumber ? ((LazyNumber) value).value() : value;
+        }
+    }
+
+    /**
+     * @return true while binding keeps the text of fractional numbers, as
+     * {@link LazyNumber} values.
+     */
+    boolean exactFractions() {
+        return lexer.numberFactory == Binding.EXACT_FRACTIONS;
+    }
+
+    /**
+     * Read the value at the cursor straight into an instance of a type,
+     * without building JSONObject or JSONArray instances. The cursor is left
+     * on the last token of the value, so records of a large document can be
+     * bound one at a time.
+     * <p>
+     * Classes are bound through their non-static, non-transient fields,
+     * including private and inherited ones, and created with their
+     * constructor without parameters; records are created with their
+     * canonical constructor. Fields may be primitives and their wrappers,
+     * String, BigDecimal, BigInteger, enums, arrays, collections, maps with
+     * String keys, Object and other bound classes; collections, maps and
+     * arrays take the type of their elements from the generic type of the
+     * field. Unknown entries are skipped without being built, and missing
+     * ones keep their default value. The binding of a class is built once
+     * and cached. Classes annotated with
+     * {@link com.github.suditoli.melawi.json.codec.JsonCodec} are read by
+     * their generated codec instead.
+     * <p>
+     * Unless a number factory is set, the fractional numbers read by this
+     * call keep their text, so that BigDecimal fields get their exact digits.
+     * If the value is itself a number, it was read before this call: set
+     * {@link ExactNumberFactory} to bind it to a BigDecimal exactly.
+     *
+     * @param <T>
+     * @param type
+     * @return The value, null for JSON null.
+     * @throws IOException
+     * @throws ParseException
+     * @throws JSONException - If the value does not fit the type, or the type
+     * cannot be bound.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readValue(Class<T> type) throws IOException, ParseException {
+        if (lexer.numberFactory != null) {
+            return (T) Binding.of(type).read(this);
+        }
+        lexer.numberFactory = Binding.EXACT_FRACTIONS;
+        try {
+            return (T) Binding.of(type).read(this);
+        } finally {
+            lexer.numberFactory = null;
+        }
+    }
+
+    /**
+     * Close the underlying reader or stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (source != null) {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.JSONException;
+import com.github.suditoli.melawi.json.JSONObject;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.NoSuchElementException;
+
+/**
+ * Reader for newline-delimited JSON (JSON Lines, NDJSON). A single scanner
+ * runs over the whole input and every record is parsed where it stands, so
+ * no line is copied into a String first.
+ * <p>
+ * Records are only required to be separated by whitespace: blank lines are
+ * ignored, and a record may span several lines. Please note that
+ * JsonLinesReader is NOT thread-safe.
+ *
+ * <pre>
+ * try (JsonLinesReader lines = new JsonLinesReader(in)) {
+ *     while (lines.hasNext()) {
+ *         JSONObject event = lines.nextObject();
+ *     }
+ * }
+ * </pre>
+ *
+ * @see com.github.suditoli.melawi.json.JsonLinesWriter
+ */
+public class JsonLinesReader implements Closeable {
+
+    private final JSONReader reader;
+    private boolean peeked;
+    private long recordCount;
+
+    public JsonLinesReader(Reader in) {
+        this(new JSONReader(in));
+    }
+
+    /**
+     * @param in - UTF-8 encoded records.
+     */
+    public JsonLinesReader(InputStream in) {
+        this(new JSONReader(in));
+    }
+
+    private JsonLinesReader(JSONReader reader) {
+        this.reader = reader;
+        reader.valueSequence = true;
+    }
+
+    /**
+     * @param keyCache - The cache to use, or null.
+     * @see JSONParser#setKeyCache(KeyCache)
+     */
+    public void setKeyCache(KeyCache keyCache) {
+        reader.setKeyCache(keyCache);
+    }
+
+    /**
+     * @param numberFactory - The factory to use, or null for Long and Double.
+     * @see JSONParser#setNumberFactory(NumberFactory)
+     */
+    public void setNumberFactory(NumberFactory numberFactory) {
+        reader.setNumberFactory(numberFactory);
+    }
+
+    /**
+     * @return true if another record follows.
+     * @throws IOException
+     * @throws ParseException
+     */
+    public boolean hasNext() throws IOException, ParseException {
+        if (!peeked) {
+            reader.nextToken();
+            peeked = true;
+        }
+        return reader.currentToken() != JSONReader.END_DOCUMENT;
+    }
+
+    /**
+     * @return The next record: a JSONObject, a JSONArray or a primitive.
+     * @throws IOException
+     * @throws ParseException
+     * @throws NoSuchElementException - If there are no more records.
+     */
+    public Object next() throws IOException, ParseException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        peeked = false;
+        recordCount++;
+        return reader.readValue();
+    }
+
+    /**
+     * @return The next record, which must be an object.
+     * @throws IOException
+     * @throws ParseException
+     * @throws NoSuchElementException - If there are no more records.
+     */
+    public JSONObject nextObject() throws IOException, ParseException {
+        Object record = next();
+        if (!(record instanceof JSONObject)) {
+            throw new JSONException("Record " + recordCount + " is not a JSONObject.");
+        }
+        return (JSONObject) record;
+    }
+
+    /**
+     * Stream the next record to a content handler, from startJSON() to
+     * endJSON(). If a callback returns false, the rest of the record is
+     * skipped without notifications and endJSON() is not called.
+     *
+     * @param contentHandler
+     * @return false if there are no more records.
+     * @throws IOException
+     * @throws ParseException
+     */
+    public boolean next(ContentHandler contentHandler) throws IOException, ParseException {
+        if (!hasNext()) {
+            return false;
+        }
+        peeked = false;
+        recordCount++;
+        contentHandler.startJSON();
+        int token = reader.currentToken();
+        while (true) {
+            boolean resume;
+            switch (token) {
+                case JSONReader.START_OBJECT:
+                    resume = contentHandler.startObject();
+                    break;
+                case JSONReader.START_ARRAY:
+                    resume = contentHandler.startArray();
+                    break;
+                case JSONReader.FIELD_NAME:
+                    resume = contentHandler.startObjectEntry(reader.getString());
+                    break;
+                case JSONReader.END_OBJECT:
+                    resume = contentHandler.endObject() && endValue(contentHandler);
+                    break;
+                case JSONReader.END_ARRAY:
+                    resume = contentHandler.endArray() && endValue(contentHandler);
+                    break;
+                default:
+                    resume = contentHandler.primitive(reader.getValue()) && endValue(contentHandler);
+                    break;
+            }
+            if (!resume) {
+                while (reader.getDepth() > 0) {
+                    reader.nextToken();
+                }
+                return true;
+            }
+            if (reader.getDepth() == 0) {
+                contentHandler.endJSON();
+                return true;
+            }
+            token = reader.nextToken();
+        }
+    }
+
+    private boolean endValue(ContentHandler contentHandler) throws IOException, ParseException {
+        return reader.currentName() == null || contentHandler.endObjectEntry();
+    }
+
+    /**
+     * @return The number of records read so far.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Close the underlying reader or stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
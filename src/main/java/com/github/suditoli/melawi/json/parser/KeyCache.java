@@ -0,0 +1,130 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of canonical String instances for object keys. Lookups are
+ * done on the raw char range of the key, so a hit allocates nothing, and all
+ * the objects built from the same key share one String.
+ * <p>
+ * The cache is direct-mapped: a key whose slot is taken by another key
+ * replaces it. Keys longer than {@link #MAX_KEY_LENGTH} are never cached.
+ * <p>
+ * A cache can be shared by parsers running in different threads. Cached
+ * Strings are immutable, so a race only costs a miss, but the statistics are
+ * then approximate.
+ *
+ * @see JSONParser#setKeyCache(KeyCache)
+ */
+public class KeyCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int MAX_KEY_LENGTH = 64;
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private final String[] keys;
+    private final int mask;
+    private long hitCount;
+    private long missCount;
+
+    public KeyCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity - Number of slots, rounded up to a power of two, at most
+     * {@link #MAX_CAPACITY}.
+     * @throws IllegalArgumentException - If capacity is less than 1.
+     */
+    public KeyCache(int capacity) {
+        keys = new String[tableSize(capacity)];
+        mask = keys.length - 1;
+    }
+
+    /**
+     * @param capacity - At least 1.
+     * @return The capacity rounded up to a power of two, at least 2 and at
+     * most {@link #MAX_CAPACITY}.
+     */
+    static int tableSize(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        return Integer.highestOneBit(Math.max(1, Math.min(capacity, MAX_CAPACITY) - 1)) << 1;
+    }
+
+    /**
+     * @param chars
+     * @param off - Offset of the first char of the key.
+     * @param len - Length of the key.
+     * @return The canonical String for the key.
+     */
+    public String get(char[] chars, int off, int len) {
+        if (len > MAX_KEY_LENGTH) {
+            missCount++;
+            return new String(chars, off, len);
+        }
+        int h = 0;
+        for (int i = off; i < off + len; i++) {
+            h = 31 * h + chars[i];
+        }
+        int index = (h ^ (h >>> 16)) & mask;
+        String key = keys[index];
+        if (key != null && key.hashCode() == h && matches(key, chars, off, len)) {
+            hitCount++;
+            return key;
+        }
+        missCount++;
+        key = new String(chars, off, len);
+        keys[index] = key;
+        return key;
+    }
+
+    private static boolean matches(String key, char[] chars, int off, int len) {
+        if (key.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (key.charAt(i) != chars[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of lookups answered with a cached String.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return The number of lookups that had to create a String.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return The ratio of hits to lookups, or 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * Remove every cached key and reset the statistics.
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyCache[capacity=" + keys.length + ", hits=" + hitCount + ", misses=" + missCount + "]";
+    }
+}
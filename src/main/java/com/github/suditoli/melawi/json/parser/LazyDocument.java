@@ -0,0 +1,349 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A JSON document indexed by a tape: one long per token, in document order,
+ * pointing back into the UTF-8 source. Containers point to their matching
+ * end, so a value is skipped in constant time, and strings and numbers are
+ * only decoded when they are read.
+ * <p>
+ * The upper byte of a tape entry holds the token type. For containers the
+ * rest holds the index of the matching entry; for strings and numbers it holds
+ * the offset of the token in the source, and for strings made only of ASCII
+ * characters without escapes also their length.
+ *
+ * @see JSONParser#parseLazy(byte[], int, int)
+ */
+class LazyDocument {
+
+    static final int START_OBJECT = 1;
+    static final int END_OBJECT = 2;
+    static final int START_ARRAY = 3;
+    static final int END_ARRAY = 4;
+    /**
+     * ASCII string without escapes, copied straight from the source
+     */
+    static final int RAW_STRING = 5;
+    /**
+     * string decoded by the lexer
+     */
+    static final int STRING = 6;
+    static final int NUMBER = 7;
+    static final int TRUE = 8;
+    static final int FALSE = 9;
+    static final int NULL = 10;
+
+    private static final int TYPE_SHIFT = 56;
+    private static final int LENGTH_SHIFT = 32;
+    private static final long OFFSET_MASK = 0xFFFFFFFFL;
+    private static final long LENGTH_MASK = 0xFFFFFFL;
+
+    final byte[] source;
+    private final int end;
+    long[] tape;
+    private int size;
+    private Utf8Lexer lexer;
+    private final KeyCache keyCache;
+    private final NumberFactory numberFactory;
+    private final LongCache longCache;
+
+    private LazyDocument(byte[] source, int end, KeyCache keyCache, NumberFactory numberFactory, LongCache longCache) {
+        this.source = source;
+        this.end = end;
+        this.tape = new long[16];
+        this.keyCache = keyCache;
+        this.numberFactory = numberFactory;
+        this.longCache = longCache;
+    }
+
+    static int type(long entry) {
+        return (int) (entry >>> TYPE_SHIFT);
+    }
+
+    static int link(long entry) {
+        return (int) entry;
+    }
+
+    private static int offset(long entry) {
+        return (int) (entry & OFFSET_MASK);
+    }
+
+    private static int length(long entry) {
+        return (int) ((entry >>> LENGTH_SHIFT) & LENGTH_MASK);
+    }
+
+    /**
+     * @return The index of the entry following the value at index.
+     */
+    int next(int index) {
+        int type = type(tape[index]);
+        if (type == START_OBJECT || type == START_ARRAY) {
+            return link(tape[index]) + 1;
+        }
+        return index + 1;
+    }
+
+    /**
+     * @return The value at index: a view for containers, otherwise the same
+     * object JSONParser would build.
+     */
+    Object value(int index) {
+        long entry = tape[index];
+        switch (type(entry)) {
+            case START_OBJECT:
+                return new LazyJSONObject(this, index);
+            case START_ARRAY:
+                return new LazyJSONArray(this, index);
+            case RAW_STRING:
+                return new String(source, offset(entry), length(entry), StandardCharsets.ISO_8859_1);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return null;
+            default:
+                return scan(offset(entry), false);
+        }
+    }
+
+    /**
+     * @return The key at index.
+     */
+    String key(int index) {
+        long entry = tape[index];
+        if (type(entry) == RAW_STRING && keyCache == null) {
+            return new String(source, offset(entry), length(entry), StandardCharsets.ISO_8859_1);
+        }
+        return (String) scan(offset(entry), true);
+    }
+
+    /**
+     * @return true if the key at index equals the given key, without
+     * building the key when it is stored raw.
+     */
+    boolean keyEquals(int index, String key) {
+        long entry = tape[index];
+        if (type(entry) != RAW_STRING) {
+            return key.equals(key(index));
+        }
+        int length = length(entry);
+        if (length != key.length()) {
+            return false;
+        }
+        int offset = offset(entry);
+        for (int i = 0; i < length; i++) {
+            if (source[offset + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode the string or number starting at offset with the lexer.
+     */
+    private Object scan(int offset, boolean key) {
+        if (lexer == null) {
+            lexer = new Utf8Lexer();
+            lexer.keyCache = keyCache;
+            lexer.numberFactory = numberFactory;
+            lexer.longCache = longCache;
+        }
+        lexer.yyreset(source, offset, end - offset);
+        lexer.keyExpected = key;
+        try {
+            lexer.yylex();
+            return lexer.value();
+        } catch (IOException | ParseException e) {
+            // the token was checked while building the tape
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void append(int type, long payload) {
+        if (size == tape.length) {
+            tape = Arrays.copyOf(tape, size * 2);
+        }
+        tape[size++] = ((long) type << TYPE_SHIFT) | payload;
+    }
+
+    /**
+     * Build the tape of a range of UTF-8 encoded bytes in a single pass. The
+     * accepted input is the same as JSONParser's.
+     *
+     * @return The document, or null if the input is not well-formed.
+     */
+    static LazyDocument build(byte[] b, int off, int len, KeyCache keyCache, NumberFactory numberFactory, LongCache longCache) {
+        int end = off + len;
+        LazyDocument document = new LazyDocument(b, end, keyCache, numberFactory, longCache);
+        document.tape = new long[Math.max(16, len / 8)];
+        int[] stack = new int[16];
+        int depth = 0;
+        int status = JSONParser.S_INIT;
+        int i = off;
+        if (len >= 3 && b[i] == (byte) 0xEF && b[i + 1] == (byte) 0xBB && b[i + 2] == (byte) 0xBF) {
+            i += 3;
+        }
+        while (true) {
+            while (i < end && (b[i] == ' ' || b[i] == '\t' || b[i] == '\n' || b[i] == '\r')) {
+                i++;
+            }
+            if (i == end) {
+                return status == JSONParser.S_IN_FINISHED_VALUE ? document : null;
+            }
+            int c = b[i];
+            switch (c) {
+                case '{':
+                case '[':
+                    if (status == JSONParser.S_IN_OBJECT || status == JSONParser.S_IN_FINISHED_VALUE) {
+                        return null;
+                    }
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = document.size;
+                    document.append(c == '{' ? START_OBJECT : START_ARRAY, 0);
+                    status = c == '{' ? JSONParser.S_IN_OBJECT : JSONParser.S_IN_ARRAY;
+                    i++;
+                    break;
+                case '}':
+                case ']':
+                    if (status != (c == '}' ? JSONParser.S_IN_OBJECT : JSONParser.S_IN_ARRAY)) {
+                        return null;
+                    }
+                    int start = stack[--depth];
+                    document.tape[start] |= document.size;
+                    document.append(c == '}' ? END_OBJECT : END_ARRAY, start);
+                    status = depth == 0 ? JSONParser.S_IN_FINISHED_VALUE
+                            : type(document.tape[stack[depth - 1]]) == START_OBJECT ? JSONParser.S_IN_OBJECT : JSONParser.S_IN_ARRAY;
+                    i++;
+                    break;
+                case ',':
+                    if (status != JSONParser.S_IN_OBJECT && status != JSONParser.S_IN_ARRAY) {
+                        return null;
+                    }
+                    i++;
+                    break;
+                case ':':
+                    if (status != JSONParser.S_PASSED_PAIR_KEY) {
+                        return null;
+                    }
+                    i++;
+                    break;
+                default:
+                    if (status == JSONParser.S_IN_FINISHED_VALUE) {
+                        return null;
+                    }
+                    int next = c == '"' ? document.string(i) : document.primitive(i);
+                    if (next < 0) {
+                        return null;
+                    }
+                    i = next;
+                    if (status == JSONParser.S_IN_OBJECT) {
+                        if (c != '"') {
+                            return null;
+                        }
+                        status = JSONParser.S_PASSED_PAIR_KEY;
+                    } else if (status == JSONParser.S_PASSED_PAIR_KEY) {
+                        status = JSONParser.S_IN_OBJECT;
+                    } else if (status == JSONParser.S_INIT) {
+                        status = JSONParser.S_IN_FINISHED_VALUE;
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Append the string starting with the quote at i.
+     *
+     * @return The index after the closing quote, or -1 if it is missing.
+     */
+    private int string(int i) {
+        boolean raw = true;
+        int j = i + 1;
+        while (j < end) {
+            byte c = source[j];
+            if (c == '"') {
+                int length = j - i - 1;
+                if (raw && length <= LENGTH_MASK) {
+                    append(RAW_STRING, ((long) length << LENGTH_SHIFT) | (i + 1));
+                } else {
+                    append(STRING, i);
+                }
+                return j + 1;
+            }
+            if (c == '\\') {
+                raw = false;
+                j += 2;
+            } else {
+                if (c < 0) {
+                    raw = false;
+                }
+                j++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append the number or literal starting at i.
+     *
+     * @return The index after it, or -1 if it is malformed.
+     */
+    private int primitive(int i) {
+        switch (source[i]) {
+            case 't':
+                return literal(i, "true", TRUE);
+            case 'f':
+                return literal(i, "false", FALSE);
+            case 'n':
+                return literal(i, "null", NULL);
+            default:
+                break;
+        }
+        // INT = [-]?[0-9]+, DOUBLE = {INT}((\.[0-9]+)?([eE][-+]?[0-9]+)?)
+        int j = source[i] == '-' ? i + 1 : i;
+        if (!isDigit(j)) {
+            return -1;
+        }
+        while (isDigit(++j)) {
+        }
+        if (j < end && source[j] == '.' && isDigit(j + 1)) {
+            j++;
+            while (isDigit(++j)) {
+            }
+        }
+        if (j < end && (source[j] == 'e' || source[j] == 'E')) {
+            int k = j + 1 < end && (source[j + 1] == '+' || source[j + 1] == '-') ? j + 2 : j + 1;
+            if (isDigit(k)) {
+                j = k;
+                while (isDigit(++j)) {
+                }
+            }
+        }
+        append(NUMBER, i);
+        return j;
+    }
+
+    private boolean isDigit(int i) {
+        return i < end && source[i] >= '0' && source[i] <= '9';
+    }
+
+    private int literal(int i, String literal, int type) {
+        if (end - i < literal.length()) {
+            return -1;
+        }
+        for (int k = 1; k < literal.length(); k++) {
+            if (source[i + k] != literal.charAt(k)) {
+                return -1;
+            }
+        }
+        append(type, 0);
+        return i + literal.length();
+    }
+}
@@ -0,0 +1,308 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.JSONArray;
+import com.github.suditoli.melawi.json.JSONAware;
+import com.github.suditoli.melawi.json.JSONException;
+import com.github.suditoli.melawi.json.JSONStreamAware;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of a JSON array of a lazy document. The elements are located
+ * on the tape on first access and decoded on every access; nested objects and
+ * arrays are returned as views too.
+ * <p>
+ * Views share the document's decoder and are NOT thread-safe. Use
+ * {@link #toJSONArray()} to get a mutable copy.
+ *
+ * @see JSONParser#parseLazy(byte[], int, int)
+ */
+public class LazyJSONArray extends AbstractList<Object> implements RandomAccess, JSONAware, JSONStreamAware {
+
+    private final LazyDocument document;
+    private final int start;
+
+    /**
+     * tape index of every element
+     */
+    private int[] elements;
+
+    LazyJSONArray(LazyDocument document, int start) {
+        this.document = document;
+        this.start = start;
+    }
+
+    private static JSONException wrongValueFormatException(int index, String valueType) {
+        return new JSONException("LazyJSONArray[" + index + "] is not a " + valueType + ".");
+    }
+
+    private int[] elements() {
+        if (elements == null) {
+            int end = LazyDocument.link(document.tape[start]);
+            int n = 0;
+            for (int i = start + 1; i < end; i = document.next(i)) {
+                n++;
+            }
+            elements = new int[n];
+            n = 0;
+            for (int i = start + 1; i < end; i = document.next(i)) {
+                elements[n++] = i;
+            }
+        }
+        return elements;
+    }
+
+    @Override
+    public Object get(int index) {
+        int[] elements = elements();
+        if (index < 0 || index >= elements.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.length);
+        }
+        return document.value(elements[index]);
+    }
+
+    @Override
+    public int size() {
+        return elements().length;
+    }
+
+    public boolean getBoolean(int index) {
+        Object object = get(index);
+        if (object instanceof Boolean) {
+            return (Boolean) object;
+        } else if (object instanceof String) {
+            return Boolean.valueOf((String) object);
+        }
+        throw wrongValueFormatException(index, "Boolean");
+    }
+
+    public boolean getBoolean(int index, boolean defaultValue) {
+        try {
+            return getBoolean(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    public byte getByte(int index) {
+        return (byte) getLong(index, "Byte");
+    }
+
+    public byte getByte(int index, byte defaultValue) {
+        try {
+            return getByte(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    public short getShort(int index) {
+        return (short) getLong(index, "Short");
+    }
+
+    public short getShort(int index, short defaultValue) {
+        try {
+            return getShort(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    public int getInteger(int index) {
+        return (int) getLong(index, "Integer");
+    }
+
+    public int getInteger(int index, int defaultValue) {
+        try {
+            return getInteger(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    public long getLong(int index) {
+        return getLong(index, "Long");
+    }
+
+    public long getLong(int index, long defaultValue) {
+        try {
+            return getLong(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    private long getLong(int index, String valueType) {
+        Object object = get(index);
+        try {
+            if (object instanceof Number) {
+                return ((Number) object).longValue();
+            } else if (object instanceof String) {
+                return Long.parseLong((String) object);
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw wrongValueFormatException(index, valueType);
+    }
+
+    public float getFloat(int index) {
+        return (float) getDouble(index, "Float");
+    }
+
+    public float getFloat(int index, float defaultValue) {
+        try {
+            return getFloat(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(int index) {
+        return getDouble(index, "Double");
+    }
+
+    public double getDouble(int index, double defaultValue) {
+        try {
+            return getDouble(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    private double getDouble(int index, String valueType) {
+        Object object = get(index);
+        try {
+            if (object instanceof Number) {
+                return ((Number) object).doubleValue();
+            } else if (object instanceof String) {
+                return Double.parseDouble((String) object);
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw wrongValueFormatException(index, valueType);
+    }
+
+    /**
+     * @param index
+     * @return The integer, or null if the element is null.
+     */
+    public BigInteger getBigInteger(int index) {
+        Object object = get(index);
+        try {
+            if (object == null || object instanceof BigInteger) {
+                return (BigInteger) object;
+            } else if (object instanceof Long || object instanceof Integer) {
+                return BigInteger.valueOf(((Number) object).longValue());
+            } else if (object instanceof Number || object instanceof String) {
+                return new BigDecimal(object.toString()).toBigIntegerExact();
+            }
+        } catch (ArithmeticException | NumberFormatException ex) {
+            // reported below
+        }
+        throw wrongValueFormatException(index, "BigInteger");
+    }
+
+    public BigInteger getBigInteger(int index, BigInteger defaultValue) {
+        try {
+            return getBigInteger(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param index
+     * @return The decimal, or null if the element is null.
+     */
+    public BigDecimal getBigDecimal(int index) {
+        Object object = get(index);
+        try {
+            if (object == null || object instanceof BigDecimal) {
+                return (BigDecimal) object;
+            } else if (object instanceof Number || object instanceof String) {
+                return new BigDecimal(object.toString());
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw wrongValueFormatException(index, "BigDecimal");
+    }
+
+    public BigDecimal getBigDecimal(int index, BigDecimal defaultValue) {
+        try {
+            return getBigDecimal(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    public String getString(int index) {
+        Object object = get(index);
+        if (object == null || object instanceof String) {
+            return (String) object;
+        }
+        throw wrongValueFormatException(index, "String");
+    }
+
+    public String getString(int index, String defaultValue) {
+        try {
+            return getString(index);
+        } catch (JSONException | IndexOutOfBoundsException ex) {
+            return defaultValue;
+        }
+    }
+
+    public LazyJSONObject getJSONObject(int index) {
+        Object object = get(index);
+        if (object == null || object instanceof LazyJSONObject) {
+            return (LazyJSONObject) object;
+        }
+        throw wrongValueFormatException(index, "JSONObject");
+    }
+
+    public LazyJSONArray getJSONArray(int index) {
+        Object object = get(index);
+        if (object == null || object instanceof LazyJSONArray) {
+            return (LazyJSONArray) object;
+        }
+        throw wrongValueFormatException(index, "JSONArray");
+    }
+
+    public boolean isNull(int index) {
+        return LazyDocument.type(document.tape[elements()[index]]) == LazyDocument.NULL;
+    }
+
+    /**
+     * @return A JSONArray holding a copy of this array, with nested objects
+     * and arrays copied into JSONObject and JSONArray instances.
+     */
+    public JSONArray toJSONArray() {
+        JSONArray array = new JSONArray();
+        array.ensureCapacity(size());
+        for (Object value : this) {
+            array.add(LazyJSONObject.copy(value));
+        }
+        return array;
+    }
+
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        JSONArray.writeJSONString(this, out);
+    }
+
+    @Override
+    public String toJSONString() {
+        return JSONArray.toJSONString(this);
+    }
+
+    @Override
+    public String toString() {
+        return toJSONString();
+    }
+}
@@ -0,0 +1,378 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.JSONAware;
+import com.github.suditoli.melawi.json.JSONException;
+import com.github.suditoli.melawi.json.JSONObject;
+import com.github.suditoli.melawi.json.JSONStreamAware;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only view of a JSON object of a lazy document. Keys are compared on the
+ * source bytes and values are decoded on every access; nested objects and
+ * arrays are returned as views too.
+ * <p>
+ * As with JSONParser, the last of duplicate keys wins in lookups, but the
+ * entry set lists every occurrence. Views share the document's decoder and
+ * are NOT thread-safe. Use {@link #toJSONObject()} to get a mutable copy.
+ *
+ * @see JSONParser#parseLazy(byte[], int, int)
+ */
+public class LazyJSONObject extends AbstractMap<String, Object> implements JSONAware, JSONStreamAware {
+
+    private final LazyDocument document;
+    private final int start;
+    private int size = -1;
+
+    LazyJSONObject(LazyDocument document, int start) {
+        this.document = document;
+        this.start = start;
+    }
+
+    private static JSONException wrongValueFormatException(String key, String valueType) {
+        return new JSONException("LazyJSONObject[" + key + "] is not a " + valueType + ".");
+    }
+
+    /**
+     * @return The tape index of the value of key, or -1.
+     */
+    private int find(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        int end = LazyDocument.link(document.tape[start]);
+        int found = -1;
+        for (int i = start + 1; i < end; i = document.next(i + 1)) {
+            if (document.keyEquals(i, (String) key)) {
+                found = i + 1;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = find(key);
+        return index < 0 ? null : document.value(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            int end = LazyDocument.link(document.tape[start]);
+            int n = 0;
+            for (int i = start + 1; i < end; i = document.next(i + 1)) {
+                n++;
+            }
+            size = n;
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<Map.Entry<String, Object>>() {
+                    private final int end = LazyDocument.link(document.tape[start]);
+                    private int index = start + 1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < end;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (index >= end) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String, Object> entry = new SimpleImmutableEntry<>(document.key(index), document.value(index + 1));
+                        index = document.next(index + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LazyJSONObject.this.size();
+            }
+        };
+    }
+
+    public boolean getBoolean(String key) {
+        Object object = get(key);
+        if (object instanceof Boolean) {
+            return (Boolean) object;
+        } else if (object instanceof String) {
+            return Boolean.valueOf((String) object);
+        }
+        throw wrongValueFormatException(key, "Boolean");
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        try {
+            return getBoolean(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    public byte getByte(String key) {
+        return (byte) getLong(key, "Byte");
+    }
+
+    public byte getByte(String key, byte defaultValue) {
+        try {
+            return getByte(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    public short getShort(String key) {
+        return (short) getLong(key, "Short");
+    }
+
+    public short getShort(String key, short defaultValue) {
+        try {
+            return getShort(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    public int getInteger(String key) {
+        return (int) getLong(key, "Integer");
+    }
+
+    public int getInteger(String key, int defaultValue) {
+        try {
+            return getInteger(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key) {
+        return getLong(key, "Long");
+    }
+
+    public long getLong(String key, long defaultValue) {
+        try {
+            return getLong(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    private long getLong(String key, String valueType) {
+        Object object = get(key);
+        try {
+            if (object instanceof Number) {
+                return ((Number) object).longValue();
+            } else if (object instanceof String) {
+                return Long.parseLong((String) object);
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw wrongValueFormatException(key, valueType);
+    }
+
+    public float getFloat(String key) {
+        return (float) getDouble(key, "Float");
+    }
+
+    public float getFloat(String key, float defaultValue) {
+        try {
+            return getFloat(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String key) {
+        return getDouble(key, "Double");
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        try {
+            return getDouble(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    private double getDouble(String key, String valueType) {
+        Object object = get(key);
+        try {
+            if (object instanceof Number) {
+                return ((Number) object).doubleValue();
+            } else if (object instanceof String) {
+                return Double.parseDouble((String) object);
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw wrongValueFormatException(key, valueType);
+    }
+
+    /**
+     * @param key
+     * @return The integer, or null if the key is absent or null.
+     */
+    public BigInteger getBigInteger(String key) {
+        Object object = get(key);
+        try {
+            if (object == null || object instanceof BigInteger) {
+                return (BigInteger) object;
+            } else if (object instanceof Long || object instanceof Integer) {
+                return BigInteger.valueOf(((Number) object).longValue());
+            } else if (object instanceof Number || object instanceof String) {
+                return new BigDecimal(object.toString()).toBigIntegerExact();
+            }
+        } catch (ArithmeticException | NumberFormatException ex) {
+            // reported below
+        }
+        throw wrongValueFormatException(key, "BigInteger");
+    }
+
+    public BigInteger getBigInteger(String key, BigInteger defaultValue) {
+        try {
+            return getBigInteger(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param key
+     * @return The decimal, or null if the key is absent or null.
+     */
+    public BigDecimal getBigDecimal(String key) {
+        Object object = get(key);
+        try {
+            if (object == null || object instanceof BigDecimal) {
+                return (BigDecimal) object;
+            } else if (object instanceof Number || object instanceof String) {
+                return new BigDecimal(object.toString());
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw wrongValueFormatException(key, "BigDecimal");
+    }
+
+    public BigDecimal getBigDecimal(String key, BigDecimal defaultValue) {
+        try {
+            return getBigDecimal(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param key
+     * @return The string, or null if the key is absent or null.
+     */
+    public String getString(String key) {
+        Object object = get(key);
+        if (object == null || object instanceof String) {
+            return (String) object;
+        }
+        throw wrongValueFormatException(key, "String");
+    }
+
+    public String getString(String key, String defaultValue) {
+        try {
+            return getString(key);
+        } catch (JSONException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param key
+     * @return The view of the object, or null if the key is absent or null.
+     */
+    public LazyJSONObject getJSONObject(String key) {
+        Object object = get(key);
+        if (object == null || object instanceof LazyJSONObject) {
+            return (LazyJSONObject) object;
+        }
+        throw wrongValueFormatException(key, "JSONObject");
+    }
+
+    /**
+     * @param key
+     * @return The view of the array, or null if the key is absent or null.
+     */
+    public LazyJSONArray getJSONArray(String key) {
+        Object object = get(key);
+        if (object == null || object instanceof LazyJSONArray) {
+            return (LazyJSONArray) object;
+        }
+        throw wrongValueFormatException(key, "JSONArray");
+    }
+
+    public boolean has(String key) {
+        return containsKey(key);
+    }
+
+    public boolean isNull(String key) {
+        int index = find(key);
+        return index >= 0 && LazyDocument.type(document.tape[index]) == LazyDocument.NULL;
+    }
+
+    /**
+     * @return A JSONObject holding a copy of this object, with nested objects
+     * and arrays copied into JSONObject and JSONArray instances.
+     */
+    public JSONObject toJSONObject() {
+        JSONObject object = new JSONObject();
+        for (Map.Entry<String, Object> entry : entrySet()) {
+            object.put(entry.getKey(), copy(entry.getValue()));
+        }
+        return object;
+    }
+
+    static Object copy(Object value) {
+        if (value instanceof LazyJSONObject) {
+            return ((LazyJSONObject) value).toJSONObject();
+        } else if (value instanceof LazyJSONArray) {
+            return ((LazyJSONArray) value).toJSONArray();
+        }
+        return value;
+    }
+
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        JSONObject.writeJSONString(this, out);
+    }
+
+    @Override
+    public String toJSONString() {
+        return JSONObject.toJSONString(this);
+    }
+
+    @Override
+    public String toString() {
+        return toJSONString();
+    }
+}
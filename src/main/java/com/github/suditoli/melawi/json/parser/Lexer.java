@@ -0,0 +1,154 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * Common contract of the scanners feeding {@link JSONParser}.
+ *
+ * @see Yylex
+ * @see Utf8Lexer
+ */
+abstract class Lexer {
+
+    /**
+     * canonicalizes object keys, or null
+     */
+    KeyCache keyCache;
+
+    /**
+     * true if the next string token is an object key
+     */
+    boolean keyExpected;
+
+    /**
+     * creates the values of numbers, or null for Long and Double
+     */
+    NumberFactory numberFactory;
+
+    /**
+     * boxes the values of integers, or null for Long.valueOf
+     */
+    LongCache longCache;
+
+    /**
+     * true to return unescaped string values as slices of the input when the
+     * scanner can
+     */
+    boolean stringSlices;
+
+    /**
+     * the type of the current token, Yytoken.TYPE_EOF at the end of input
+     */
+    private int type = Yytoken.TYPE_EOF;
+
+    /**
+     * the value of the current token if it is a TYPE_VALUE, null otherwise
+     */
+    private Object value;
+
+    /**
+     * Resumes scanning until the next token is matched or the end of input is
+     * reached. The token is held by the scanner until the next call, so no
+     * object is created for it.
+     *
+     * @return the type of the next token, Yytoken.TYPE_EOF at the end of
+     * input.
+     * @throws IOException
+     * @throws ParseException
+     */
+    abstract int yylex() throws IOException, ParseException;
+
+    /**
+     * @return The type of the current token.
+     */
+    final int type() {
+        return type;
+    }
+
+    /**
+     * @return The value of the current token: a String, a Number, a Boolean,
+     * a StringSlice or null.
+     */
+    final Object value() {
+        return value;
+    }
+
+    /**
+     * Makes a match the current token.
+     *
+     * @return type
+     */
+    final int token(int type, Object value) {
+        this.type = type;
+        this.value = value;
+        return type;
+    }
+
+    /**
+     * @return The current token as an object, to be reported by a
+     * ParseException.
+     */
+    final Yytoken unexpectedToken() {
+        return new Yytoken(type, value);
+    }
+
+    /**
+     * @param chars - An integer token, an optional minus sign followed by
+     * digits.
+     * @return The value of the integer as a Long, or as a BigInteger if it
+     * does not fit in a long. Digits are accumulated directly, so only the
+     * box is allocated, if any.
+     */
+    final Number integer(char[] chars, int off, int len) {
+        boolean negative = chars[off] == '-';
+        /* accumulate negatively, as Long.parseLong does, to reach Long.MIN_VALUE */
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        for (int i = negative ? off + 1 : off; i < off + len; i++) {
+            int digit = chars[i] - '0';
+            if (result < multmin) {
+                return new BigInteger(new String(chars, off, len));
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return new BigInteger(new String(chars, off, len));
+            }
+            result -= digit;
+        }
+        return box(negative ? result : -result);
+    }
+
+    /**
+     * @return The boxed value of an integer, from the long cache if there is
+     * one.
+     */
+    final Long box(long value) {
+        return longCache != null ? longCache.valueOf(value) : Long.valueOf(value);
+    }
+
+    /**
+     * Skips whitespace, then the value starting at the next character without
+     * building it: an object or an array up to its matching bracket, counting
+     * brackets outside of strings only; a string up to its closing quote; and
+     * anything else up to the next whitespace or structural character. The
+     * content of a skipped value is not checked.
+     *
+     * @return the first character of the skipped value; or the next character,
+     * not consumed, if it cannot start a value; or -1 at the end of input.
+     * @throws IOException
+     */
+    abstract int skipValue() throws IOException;
+
+    /**
+     * @return The position of the beginning of the current token.
+     */
+    abstract int getPosition();
+
+    /**
+     * @return The number of bytes or chars held by the buffers of this
+     * scanner.
+     */
+    abstract int bufferCapacity();
+}
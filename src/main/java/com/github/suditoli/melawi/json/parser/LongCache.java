@@ -0,0 +1,59 @@
+package com.github.suditoli.melawi.json.parser;
+
+/**
+ * Cache of boxed Long values for a range of small integers, such as ids,
+ * counts and codes, so that parsing them allocates nothing. Long.valueOf only
+ * caches -128 to 127; this range is chosen by the caller.
+ * <p>
+ * Values are boxed on first use. A cache can be shared by parsers running in
+ * different threads: Long instances are immutable, so a race only boxes a
+ * value twice.
+ *
+ * @see JSONParser#setLongCache(LongCache)
+ */
+public class LongCache {
+
+    public static final int DEFAULT_MAX = 65535;
+
+    private final long min;
+    private final Long[] values;
+
+    /**
+     * Cache the values from -128 to {@link #DEFAULT_MAX}.
+     */
+    public LongCache() {
+        this(-128, DEFAULT_MAX);
+    }
+
+    /**
+     * @param min - Smallest cached value.
+     * @param max - Largest cached value.
+     * @throws IllegalArgumentException - If the range is empty or holds more
+     * than 2^30 values.
+     */
+    public LongCache(long min, long max) {
+        if (max < min || max - min >= 1 << 30) {
+            throw new IllegalArgumentException("Invalid range: " + min + " to " + max);
+        }
+        this.min = min;
+        this.values = new Long[(int) (max - min + 1)];
+    }
+
+    /**
+     * @param value
+     * @return The cached Long for the value if it is in the range, a new one
+     * otherwise.
+     */
+    public Long valueOf(long value) {
+        long index = value - min;
+        if (index < 0 || index >= values.length) {
+            return Long.valueOf(value);
+        }
+        Long boxed = values[(int) index];
+        if (boxed == null) {
+            boxed = Long.valueOf(value);
+            values[(int) index] = boxed;
+        }
+        return boxed;
+    }
+}
@@ -0,0 +1,465 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Push parser for UTF-8 encoded JSON text arriving in fragments, as read by
+ * non-blocking channels. Every fragment is handed over with
+ * {@link #feed(ByteBuffer)} and the handler is notified about every token
+ * completed so far; a token cut by the end of a fragment (half a string, an
+ * escape sequence, a UTF-8 sequence or a number) is kept until the next
+ * fragment completes it. {@link #endOfInput()} finishes the document.
+ * <p>
+ * The handler events and the errors are the same as with
+ * {@link JSONParser#parse(byte[], int, int, ContentHandler)} on the whole
+ * input, with byte offsets as positions. When a callback returns false the
+ * parser pauses: fragments fed in the meantime are only buffered, until
+ * {@link #resume()} is called.
+ * <p>
+ * Please note that NonBlockingJSONParser is NOT thread-safe.
+ */
+public class NonBlockingJSONParser {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * scan states: between tokens, in a string, after a backslash in a
+     * string, and in a number or literal
+     */
+    private static final int OUT = 0;
+    private static final int STRING = 1;
+    private static final int ESCAPE = 2;
+    private static final int WORD = 3;
+
+    /**
+     * returned by nextToken when the bytes received so far end inside a token
+     */
+    private static final int NEED_INPUT = -2;
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private final ContentHandler contentHandler;
+    private final Utf8Lexer lexer = new Utf8Lexer();
+
+    /**
+     * the pending bytes are buf[start, end); buf[0] is at input offset base
+     */
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int start;
+    private int end;
+    private long base;
+
+    /**
+     * buf[start, safe) only holds complete tokens; buf[safe, scanPos) has
+     * been classified in scanState
+     */
+    private int safe;
+    private int scanPos;
+    private int scanState = OUT;
+
+    /**
+     * true while the lexer scans buf[start, safe) as it was when it was reset
+     */
+    private boolean sliceActive;
+    private int sliceEnd;
+    private long tokenPosition;
+    private boolean atStart = true;
+
+    private boolean inputEnded;
+    private boolean paused;
+    private boolean started;
+    private int[] statusStack = new int[INITIAL_DEPTH];
+    private int statusDepth;
+    private int status = JSONParser.S_INIT;
+
+    public NonBlockingJSONParser(ContentHandler contentHandler) {
+        this.contentHandler = contentHandler;
+    }
+
+    public void setKeyCache(KeyCache keyCache) {
+        lexer.keyCache = keyCache;
+    }
+
+    public void setNumberFactory(NumberFactory numberFactory) {
+        lexer.numberFactory = numberFactory;
+    }
+
+    public void setLongCache(LongCache longCache) {
+        lexer.longCache = longCache;
+    }
+
+    /**
+     * Reset the parser to parse a new document with the same handler. The
+     * pending input is dropped.
+     */
+    public void reset() {
+        start = end = safe = scanPos = sliceEnd = 0;
+        base = tokenPosition = 0;
+        scanState = OUT;
+        sliceActive = false;
+        atStart = true;
+        inputEnded = paused = started = false;
+        statusDepth = 0;
+        status = JSONParser.S_INIT;
+    }
+
+    /**
+     * Parse the next fragment of the input. All the remaining bytes of the
+     * buffer are consumed.
+     *
+     * @param bb
+     * @throws IOException - If thrown by the handler.
+     * @throws ParseException - With the byte offset of the error as position.
+     * @throws IllegalStateException - If the end of input was signaled.
+     */
+    public void feed(ByteBuffer bb) throws IOException, ParseException {
+        int len = bb.remaining();
+        ensureCapacity(len);
+        bb.get(buf, end, len);
+        end += len;
+        process();
+    }
+
+    /**
+     * Parse the next fragment of the input.
+     *
+     * @see #feed(ByteBuffer)
+     *
+     * @param b
+     * @param off - Offset of the first byte of the fragment.
+     * @param len - Number of bytes of the fragment.
+     * @throws IOException - If thrown by the handler.
+     * @throws ParseException - With the byte offset of the error as position.
+     * @throws IllegalStateException - If the end of input was signaled.
+     */
+    public void feed(byte[] b, int off, int len) throws IOException, ParseException {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, end, len);
+        end += len;
+        process();
+    }
+
+    /**
+     * Signal the end of the input: the last token is completed, the document
+     * is checked to be complete and the handler receives endJSON().
+     *
+     * @throws IOException - If thrown by the handler.
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public void endOfInput() throws IOException, ParseException {
+        inputEnded = true;
+        process();
+    }
+
+    /**
+     * Continue after the handler stopped, with the input buffered meanwhile.
+     *
+     * @throws IOException - If thrown by the handler.
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    public void resume() throws IOException, ParseException {
+        paused = false;
+        process();
+    }
+
+    /**
+     * @return true if a callback returned false and {@link #resume()} has not
+     * been called since.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return true once the handler received endJSON().
+     */
+    public boolean isDone() {
+        return status == JSONParser.S_END;
+    }
+
+    /**
+     * @return The byte offset of the beginning of the current token.
+     */
+    public int getPosition() {
+        return (int) Math.min(tokenPosition, Integer.MAX_VALUE);
+    }
+
+    private void ensureCapacity(int len) {
+        if (inputEnded) {
+            throw new IllegalStateException("The end of input was signaled.");
+        }
+        if (end + len <= buf.length) {
+            return;
+        }
+        int pending = end - start;
+        byte[] target = buf;
+        if (sliceActive || pending + len > buf.length) {
+            /*
+             * The lexer may still be reading the old array: never move bytes
+             * inside it.
+             */
+            target = new byte[Math.max(buf.length * 2, pending + len)];
+        }
+        System.arraycopy(buf, start, target, 0, pending);
+        buf = target;
+        base += start;
+        end -= start;
+        safe -= start;
+        scanPos -= start;
+        sliceEnd -= start;
+        start = 0;
+    }
+
+    private void process() throws IOException, ParseException {
+        if (!started) {
+            started = true;
+            contentHandler.startJSON();
+        }
+        while (!paused && status != JSONParser.S_END) {
+            if (status == JSONParser.S_IN_PAIR_VALUE) {
+                popStatus();
+                status = peekStatus();
+                paused = !contentHandler.endObjectEntry();
+                continue;
+            }
+            int type = nextToken();
+            if (type == NEED_INPUT) {
+                return;
+            }
+            paused = !handle(type, lexer.value());
+        }
+    }
+
+    /**
+     * @return The type of the next complete token, TYPE_EOF at the end of
+     * input, or NEED_INPUT if more input is needed.
+     */
+    private int nextToken() throws IOException, ParseException {
+        while (true) {
+            if (sliceActive) {
+                lexer.keyExpected = status == JSONParser.S_IN_OBJECT;
+                int type;
+                try {
+                    type = lexer.yylex();
+                } catch (ParseException pe) {
+                    status = JSONParser.S_IN_ERROR;
+                    tokenPosition = base + start + pe.getPosition();
+                    pe.setPosition(getPosition());
+                    throw pe;
+                }
+                tokenPosition = base + start + lexer.getPosition();
+                if (type != Yytoken.TYPE_EOF) {
+                    return type;
+                }
+                sliceActive = false;
+                start = sliceEnd;
+            }
+            scan();
+            if (safe > start) {
+                if (atStart) {
+                    atStart = false;
+                    lexer.yyreset(buf, start, safe - start);
+                } else {
+                    lexer.yycontinue(buf, start, safe - start);
+                }
+                sliceActive = true;
+                sliceEnd = safe;
+            } else if (inputEnded) {
+                return Yytoken.TYPE_EOF;
+            } else {
+                return NEED_INPUT;
+            }
+        }
+    }
+
+    /**
+     * Classify the new bytes and move safe past the tokens they complete.
+     */
+    private void scan() {
+        int state = scanState;
+        int i = scanPos;
+        int safe = this.safe;
+        for (; i < end; i++) {
+            byte c = buf[i];
+            switch (state) {
+                case STRING:
+                    if (c == '\\') {
+                        state = ESCAPE;
+                    } else if (c == '"') {
+                        state = OUT;
+                        safe = i + 1;
+                    }
+                    break;
+                case ESCAPE:
+                    state = STRING;
+                    break;
+                default:
+                    switch (c) {
+                        case '"':
+                            if (state == WORD) {
+                                safe = i;
+                            }
+                            state = STRING;
+                            break;
+                        case ' ':
+                        case '\t':
+                        case '\n':
+                        case '\r':
+                        case ',':
+                        case ':':
+                        case '[':
+                        case ']':
+                        case '{':
+                        case '}':
+                            state = OUT;
+                            safe = i + 1;
+                            break;
+                        default:
+                            state = WORD;
+                            break;
+                    }
+                    break;
+            }
+        }
+        scanState = state;
+        scanPos = i;
+        /*
+         * At the end of input whatever is left is complete, or an error
+         * reported by the lexer.
+         */
+        this.safe = inputEnded ? end : safe;
+    }
+
+    /**
+     * Apply a token to the document, as JSONParser does with a handler.
+     *
+     * @return false if the handler wants to stop.
+     */
+    private boolean handle(int type, Object value) throws IOException, ParseException {
+        switch (status) {
+            case JSONParser.S_INIT:
+                switch (type) {
+                    case Yytoken.TYPE_VALUE:
+                        status = JSONParser.S_IN_FINISHED_VALUE;
+                        pushStatus(status);
+                        return contentHandler.primitive(value);
+                    case Yytoken.TYPE_LEFT_BRACE:
+                        status = JSONParser.S_IN_OBJECT;
+                        pushStatus(status);
+                        return contentHandler.startObject();
+                    case Yytoken.TYPE_LEFT_SQUARE:
+                        status = JSONParser.S_IN_ARRAY;
+                        pushStatus(status);
+                        return contentHandler.startArray();
+                    default:
+                        throw unexpected(type, value);
+                }
+
+            case JSONParser.S_IN_FINISHED_VALUE:
+                if (type != Yytoken.TYPE_EOF) {
+                    throw unexpected(type, value);
+                }
+                status = JSONParser.S_END;
+                contentHandler.endJSON();
+                return true;
+
+            case JSONParser.S_IN_OBJECT:
+                switch (type) {
+                    case Yytoken.TYPE_COMMA:
+                        return true;
+                    case Yytoken.TYPE_VALUE:
+                        if (!(value instanceof String)) {
+                            throw unexpected(type, value);
+                        }
+                        status = JSONParser.S_PASSED_PAIR_KEY;
+                        pushStatus(status);
+                        return contentHandler.startObjectEntry((String) value);
+                    case Yytoken.TYPE_RIGHT_BRACE:
+                        endContainer();
+                        return contentHandler.endObject();
+                    default:
+                        throw unexpected(type, value);
+                }
+
+            case JSONParser.S_PASSED_PAIR_KEY:
+                switch (type) {
+                    case Yytoken.TYPE_COLON:
+                        return true;
+                    case Yytoken.TYPE_VALUE:
+                        popStatus();
+                        pushStatus(JSONParser.S_IN_PAIR_VALUE);
+                        status = JSONParser.S_IN_PAIR_VALUE;
+                        return contentHandler.primitive(value);
+                    case Yytoken.TYPE_LEFT_SQUARE:
+                        popStatus();
+                        pushStatus(JSONParser.S_IN_PAIR_VALUE);
+                        status = JSONParser.S_IN_ARRAY;
+                        pushStatus(status);
+                        return contentHandler.startArray();
+                    case Yytoken.TYPE_LEFT_BRACE:
+                        popStatus();
+                        pushStatus(JSONParser.S_IN_PAIR_VALUE);
+                        status = JSONParser.S_IN_OBJECT;
+                        pushStatus(status);
+                        return contentHandler.startObject();
+                    default:
+                        throw unexpected(type, value);
+                }
+
+            case JSONParser.S_IN_ARRAY:
+                switch (type) {
+                    case Yytoken.TYPE_COMMA:
+                        return true;
+                    case Yytoken.TYPE_VALUE:
+                        return contentHandler.primitive(value);
+                    case Yytoken.TYPE_RIGHT_SQUARE:
+                        endContainer();
+                        return contentHandler.endArray();
+                    case Yytoken.TYPE_LEFT_BRACE:
+                        status = JSONParser.S_IN_OBJECT;
+                        pushStatus(status);
+                        return contentHandler.startObject();
+                    case Yytoken.TYPE_LEFT_SQUARE:
+                        status = JSONParser.S_IN_ARRAY;
+                        pushStatus(status);
+                        return contentHandler.startArray();
+                    default:
+                        throw unexpected(type, value);
+                }
+
+            default:
+                throw unexpected(type, value);
+        }
+    }
+
+    private void endContainer() {
+        if (statusDepth > 1) {
+            popStatus();
+            status = peekStatus();
+        } else {
+            status = JSONParser.S_IN_FINISHED_VALUE;
+        }
+    }
+
+    private ParseException unexpected(int type, Object value) {
+        status = JSONParser.S_IN_ERROR;
+        return new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, new Yytoken(type, value));
+    }
+
+    private int peekStatus() {
+        return statusStack[statusDepth - 1];
+    }
+
+    private void pushStatus(int status) {
+        if (statusDepth == statusStack.length) {
+            statusStack = Arrays.copyOf(statusStack, statusDepth * 2);
+        }
+        statusStack[statusDepth++] = status;
+    }
+
+    private void popStatus() {
+        statusDepth--;
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.suditoli.melawi.json.parser;
+
+/**
+ * Number factory for creating the values of JSON numbers, straight from the
+ * characters matched by the lexer.
+ *
+ * @see JSONParser#setNumberFactory(NumberFactory)
+ * @see ExactNumberFactory
+ */
+public interface NumberFactory {
+
+    /**
+     * @param chars - Buffer holding the number. It is reused by the lexer and
+     * must not be kept.
+     * @param off - Offset of the first character of the number.
+     * @param len - Length of the number.
+     * @param fractional - true if the number has a fraction or an exponent.
+     * @return A Number instance to store the JSON number, or null if you want
+     * to use java.lang.Long or java.lang.Double.
+     */
+    Number createNumber(char[] chars, int off, int len, boolean fractional);
+}
@@ -0,0 +1,281 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Parses the elements of a top-level JSON array concurrently. A structural
+ * pre-scan counts brackets outside of strings to find the commas at depth 1,
+ * the array is cut there into chunks of several elements, and every chunk is
+ * parsed by its own scanner in a pool. The elements are handed over in
+ * document order.
+ *
+ * @see JSONParser#parseArrayParallel(java.nio.file.Path, ForkJoinPool)
+ */
+class ParallelArrayParser {
+
+    /**
+     * Smallest chunk worth a task of its own.
+     */
+    static final long MIN_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Chunks per worker, so that uneven chunks still keep every worker busy.
+     */
+    private static final int CHUNKS_PER_WORKER = 8;
+
+    private static final int BEFORE = 0;
+    private static final int IN_ARRAY = 1;
+    private static final int AFTER = 2;
+
+    private final ByteBuffer[] windows;
+    private final long windowSize;
+    private final long length;
+    private final KeyCache keyCache;
+    private final NumberFactory numberFactory;
+    private final LongCache longCache;
+
+    /**
+     * @param windows - The input, every window but the last one being
+     * windowSize bytes long, each with its position at 0.
+     */
+    ParallelArrayParser(ByteBuffer[] windows, long windowSize, KeyCache keyCache, NumberFactory numberFactory, LongCache longCache) {
+        this.windows = windows;
+        this.windowSize = windowSize;
+        long length = 0;
+        for (ByteBuffer window : windows) {
+            length += window.limit();
+        }
+        this.length = length;
+        this.keyCache = keyCache;
+        this.numberFactory = numberFactory;
+        this.longCache = longCache;
+    }
+
+    /**
+     * @param pool
+     * @return The size of the chunks for the pool.
+     */
+    long chunkSize(ForkJoinPool pool) {
+        return Math.max(MIN_CHUNK_SIZE, length / ((long) pool.getParallelism() * CHUNKS_PER_WORKER));
+    }
+
+    /**
+     * Find the boundaries of the chunks of the top-level array.
+     *
+     * @param chunkSize - Minimum size of a chunk.
+     * @return The offset of the first chunk, of every following chunk, and of
+     * the closing bracket; or null if the input is not a well-formed array.
+     */
+    long[] scan(long chunkSize) {
+        long[] bounds = new long[16];
+        int count = 0;
+        int state = BEFORE;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        long chunkStart = 0;
+        int skip = hasByteOrderMark() ? 3 : 0;
+        for (int w = 0; w < windows.length; w++) {
+            ByteBuffer window = windows[w];
+            long base = w * windowSize;
+            int limit = window.limit();
+            for (int i = w == 0 ? skip : 0; i < limit; i++) {
+                byte c = window.get(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+                switch (state) {
+                    case BEFORE:
+                        if (c == '[') {
+                            state = IN_ARRAY;
+                            depth = 1;
+                            chunkStart = base + i + 1;
+                            bounds[count++] = chunkStart;
+                        } else if (!isWhitespace(c)) {
+                            return null;
+                        }
+                        break;
+                    case IN_ARRAY:
+                        switch (c) {
+                            case '"':
+                                inString = true;
+                                break;
+                            case '[':
+                            case '{':
+                                depth++;
+                                break;
+                            case ']':
+                            case '}':
+                                if (--depth == 0) {
+                                    if (c != ']') {
+                                        return null;
+                                    }
+                                    if (count == bounds.length) {
+                                        bounds = Arrays.copyOf(bounds, count * 2);
+                                    }
+                                    bounds[count++] = base + i;
+                                    state = AFTER;
+                                }
+                                break;
+                            case ',':
+                                if (depth == 1 && base + i + 1 - chunkStart >= chunkSize) {
+                                    if (count == bounds.length) {
+                                        bounds = Arrays.copyOf(bounds, count * 2);
+                                    }
+                                    chunkStart = base + i + 1;
+                                    bounds[count++] = chunkStart;
+                                }
+                                break;
+                            default:
+                                break;
+                        }
+                        break;
+                    default:
+                        if (!isWhitespace(c)) {
+                            return null;
+                        }
+                        break;
+                }
+            }
+        }
+        return state == AFTER ? Arrays.copyOf(bounds, count) : null;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private boolean hasByteOrderMark() {
+        ByteBuffer window = windows[0];
+        return window.limit() >= 3 && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB
+                && window.get(2) == (byte) 0xBF;
+    }
+
+    /**
+     * Parse the chunks in the pool and hand their elements over in order.
+     * Only a bounded number of chunks is parsed ahead of the consumer.
+     *
+     * @param bounds - The boundaries found by {@link #scan(long)}.
+     * @param pool
+     * @param consumer
+     * @throws IOException
+     * @throws ParseException - With the byte offset of the error as position.
+     */
+    void parse(long[] bounds, ForkJoinPool pool, Consumer<Object> consumer) throws IOException, ParseException {
+        int chunks = bounds.length - 1;
+        int maxAhead = pool.getParallelism() * 2;
+        ArrayDeque<Chunk> tasks = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            for (int i = 0; i < chunks; i++) {
+                while (submitted < chunks && submitted - i < maxAhead) {
+                    Chunk task = new Chunk(bounds[submitted], bounds[submitted + 1]);
+                    pool.execute(task);
+                    tasks.add(task);
+                    submitted++;
+                }
+                for (Object value : tasks.poll().values()) {
+                    consumer.accept(value);
+                }
+            }
+        } finally {
+            for (Chunk task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Task parsing one chunk, keeping its checked exception for the caller.
+     */
+    private class Chunk extends RecursiveTask<List<Object>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long start;
+        private final long end;
+        private Exception failure;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<Object> compute() {
+            try {
+                return parseChunk(start, end);
+            } catch (IOException | ParseException e) {
+                failure = e;
+                return null;
+            }
+        }
+
+        List<Object> values() throws IOException, ParseException {
+            List<Object> values = join();
+            if (failure instanceof ParseException) {
+                throw (ParseException) failure;
+            } else if (failure != null) {
+                throw (IOException) failure;
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Parse the elements between two boundaries, as the inside of an array.
+     */
+    private List<Object> parseChunk(long start, long end) throws IOException, ParseException {
+        Utf8Lexer lexer = new Utf8Lexer();
+        ByteBuffer[] slices = slice(start, end);
+        if (slices.length == 1) {
+            lexer.yyreset(slices[0]);
+        } else {
+            lexer.yyreset(slices);
+        }
+        lexer.keyCache = keyCache;
+        lexer.numberFactory = numberFactory;
+        lexer.longCache = longCache;
+        JSONReader reader = new JSONReader(lexer, null);
+        reader.openArray();
+        List<Object> values = new ArrayList<>();
+        try {
+            while (reader.nextToken() != JSONReader.END_DOCUMENT) {
+                values.add(reader.readValue());
+            }
+        } catch (ParseException pe) {
+            pe.setPosition((int) Math.min(start + pe.getPosition(), Integer.MAX_VALUE));
+            throw pe;
+        }
+        return values;
+    }
+
+    private ByteBuffer[] slice(long start, long end) {
+        int first = (int) (start / windowSize);
+        int last = (int) (Math.max(start, end - 1) / windowSize);
+        ByteBuffer[] slices = new ByteBuffer[last - first + 1];
+        for (int w = first; w <= last; w++) {
+            long base = w * windowSize;
+            ByteBuffer slice = windows[w].duplicate();
+            slice.limit((int) (Math.min(end, base + slice.limit()) - base));
+            slice.position((int) (Math.max(start, base) - base));
+            slices[w - first] = slice;
+        }
+        return slices;
+    }
+}
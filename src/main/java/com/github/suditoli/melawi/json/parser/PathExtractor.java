@@ -0,0 +1,232 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.JSONArray;
+import com.github.suditoli.melawi.json.JSONObject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts the values selected by simple JSON paths in a single pass over a
+ * {@link JSONReader}. Only the objects and arrays on the way to a selected
+ * value are read token by token; every other value is skipped by the lexer
+ * without being built.
+ * <p>
+ * A path starts with $ followed by steps: .name or ['name'] select a member,
+ * [n] an element, and .* or [*] every member or element.
+ *
+ * @see JSONParser#extract(java.io.Reader, String...)
+ */
+class PathExtractor {
+
+    /**
+     * step matching every member or element
+     */
+    private static final Object WILDCARD = new Object();
+
+    private final String[] paths;
+    private final Object[][] steps;
+    private final boolean[] definite;
+    private final JSONArray[] matches;
+
+    /**
+     * @param paths
+     * @throws IllegalArgumentException - If a path is not valid.
+     */
+    PathExtractor(String[] paths) {
+        this.paths = paths;
+        this.steps = new Object[paths.length][];
+        this.definite = new boolean[paths.length];
+        this.matches = new JSONArray[paths.length];
+        for (int p = 0; p < paths.length; p++) {
+            steps[p] = compile(paths[p]);
+            definite[p] = true;
+            for (Object step : steps[p]) {
+                if (step == WILDCARD) {
+                    definite[p] = false;
+                }
+            }
+        }
+    }
+
+    private static Object[] compile(String path) {
+        if (!path.startsWith("$")) {
+            throw invalid(path);
+        }
+        List<Object> steps = new ArrayList<>();
+        int i = 1;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                String name = path.substring(i + 1, end);
+                if (name.isEmpty()) {
+                    throw invalid(path);
+                }
+                steps.add(name.equals("*") ? WILDCARD : name);
+                i = end;
+            } else if (c == '[' && i + 1 < path.length() && (path.charAt(i + 1) == '\'' || path.charAt(i + 1) == '"')) {
+                int end = path.indexOf(path.charAt(i + 1), i + 2);
+                if (end < 0 || end + 1 == path.length() || path.charAt(end + 1) != ']') {
+                    throw invalid(path);
+                }
+                steps.add(path.substring(i + 2, end));
+                i = end + 2;
+            } else if (c == '[') {
+                int end = path.indexOf(']', i);
+                if (end < 0) {
+                    throw invalid(path);
+                }
+                String index = path.substring(i + 1, end);
+                if (index.equals("*")) {
+                    steps.add(WILDCARD);
+                } else {
+                    try {
+                        steps.add(Integer.parseUnsignedInt(index));
+                    } catch (NumberFormatException ex) {
+                        throw invalid(path);
+                    }
+                }
+                i = end + 1;
+            } else {
+                throw invalid(path);
+            }
+        }
+        return steps.toArray();
+    }
+
+    private static IllegalArgumentException invalid(String path) {
+        return new IllegalArgumentException("Invalid JSON path: " + path);
+    }
+
+    /**
+     * Read a document and collect the selected values.
+     *
+     * @param reader - A reader before the first token of the document.
+     * @return The value of every definite path found, and a JSONArray of the
+     * values of every path with a wildcard, keyed by path.
+     * @throws IOException
+     * @throws ParseException
+     */
+    JSONObject extract(JSONReader reader) throws IOException, ParseException {
+        int[] all = new int[paths.length];
+        for (int p = 0; p < paths.length; p++) {
+            all[p] = p;
+            matches[p] = new JSONArray();
+        }
+        reader.nextToken();
+        visit(reader, all, 0);
+        reader.nextToken();
+
+        JSONObject result = new JSONObject();
+        for (int p = 0; p < paths.length; p++) {
+            if (!definite[p]) {
+                result.put(paths[p], matches[p]);
+            } else if (!matches[p].isEmpty()) {
+                /*
+                 * The last of duplicate keys wins, as with JSONParser.
+                 */
+                result.put(paths[p], matches[p].get(matches[p].size() - 1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visit the value starting at the current token.
+     *
+     * @param active - The paths whose first level steps match the value.
+     */
+    private void visit(JSONReader reader, int[] active, int level) throws IOException, ParseException {
+        for (int p : active) {
+            if (steps[p].length == level) {
+                /*
+                 * The value itself is selected: build it, and look for the
+                 * deeper paths in the result.
+                 */
+                Object value = reader.readValue();
+                for (int q : active) {
+                    select(value, q, level);
+                }
+                return;
+            }
+        }
+        switch (reader.currentToken()) {
+            case JSONReader.START_OBJECT:
+                while (reader.nextToken() == JSONReader.FIELD_NAME) {
+                    int[] children = children(active, level, reader.getString(), -1);
+                    if (children.length > 0) {
+                        reader.nextToken();
+                        visit(reader, children, level + 1);
+                    } else if (!reader.skipValue()) {
+                        reader.nextToken();
+                    }
+                }
+                break;
+            case JSONReader.START_ARRAY:
+                for (int index = 0;; index++) {
+                    int[] children = children(active, level, null, index);
+                    if (children.length > 0 || !reader.skipValue()) {
+                        if (reader.nextToken() == JSONReader.END_ARRAY) {
+                            break;
+                        }
+                        visit(reader, children, level + 1);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return The paths among active whose step at level matches the member
+     * name, or the element index if name is null.
+     */
+    private int[] children(int[] active, int level, String name, int index) {
+        int[] children = new int[active.length];
+        int n = 0;
+        for (int p : active) {
+            Object step = steps[p][level];
+            if (step == WILDCARD || (name != null ? name.equals(step) : step instanceof Integer && (Integer) step == index)) {
+                children[n++] = p;
+            }
+        }
+        return n == children.length ? children : Arrays.copyOf(children, n);
+    }
+
+    /**
+     * Collect the values selected by path p below a value already built.
+     */
+    private void select(Object value, int p, int level) {
+        if (steps[p].length == level) {
+            matches[p].add(value);
+            return;
+        }
+        Object step = steps[p][level];
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            if (step == WILDCARD) {
+                for (Object child : map.values()) {
+                    select(child, p, level + 1);
+                }
+            } else if (step instanceof String && map.containsKey(step)) {
+                select(map.get(step), p, level + 1);
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            if (step == WILDCARD) {
+                for (Object child : list) {
+                    select(child, p, level + 1);
+                }
+            } else if (step instanceof Integer && (Integer) step < list.size()) {
+                select(list.get((Integer) step), p, level + 1);
+            }
+        }
+    }
+}
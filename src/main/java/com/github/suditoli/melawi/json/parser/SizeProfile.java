@@ -0,0 +1,100 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.util.Arrays;
+
+/**
+ * Sizes of the objects and arrays seen by the parsers using this profile,
+ * learned per path: the keys leading to a container from the root, all the
+ * elements of an array sharing one path. When documents of the same shape
+ * are parsed again and again, their containers are then allocated with the
+ * right capacity instead of growing entry by entry.
+ * <p>
+ * The size of a path is the largest one seen lately: a larger container
+ * raises it at once, and every smaller one lowers it by a quarter of the
+ * difference. The profile is direct-mapped on a hash of the path, so two
+ * paths sharing a slot take turns, and a hint is only ever a hint.
+ * <p>
+ * A profile can be shared by parsers running in different threads; a race
+ * only loses an observation.
+ *
+ * @see JSONParser#setSizeProfile(SizeProfile)
+ */
+public class SizeProfile {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * the path of the root container
+     */
+    static final int ROOT = 1;
+
+    /**
+     * path hash in the high half and size in the low half of each slot
+     */
+    private final long[] slots;
+    private final int mask;
+
+    public SizeProfile() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity - Number of slots, rounded up to a power of two, at most
+     * {@link KeyCache#MAX_CAPACITY}.
+     * @throws IllegalArgumentException - If capacity is less than 1.
+     */
+    public SizeProfile(int capacity) {
+        slots = new long[KeyCache.tableSize(capacity)];
+        mask = slots.length - 1;
+    }
+
+    /**
+     * @param parent - The path of the enclosing container.
+     * @param key - The key of the entry in the enclosing object, or null for
+     * an element of an array.
+     * @return The path of a container.
+     */
+    static int path(int parent, String key) {
+        return 31 * parent + (key == null ? 0 : key.hashCode()) + 1;
+    }
+
+    /**
+     * @param path
+     * @return The size learned for the path, or 0 if unknown.
+     */
+    int hint(int path) {
+        long slot = slots[(path ^ (path >>> 16)) & mask];
+        return (int) (slot >>> 32) == path ? (int) slot : 0;
+    }
+
+    /**
+     * @param path
+     * @param size - The number of entries of a container just completed.
+     */
+    void record(int path, int size) {
+        int index = (path ^ (path >>> 16)) & mask;
+        long slot = slots[index];
+        if ((int) (slot >>> 32) == path) {
+            int learned = (int) slot;
+            if (size == learned) {
+                return;
+            }
+            if (size < learned) {
+                size = learned - (learned - size + 3) / 4;
+            }
+        }
+        slots[index] = ((long) path << 32) | size;
+    }
+
+    /**
+     * Forget every learned size.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "SizeProfile[capacity=" + slots.length + "]";
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Container factory told where each container is and how large it is
+ * expected to be, so it can allocate it with the right capacity instead of
+ * letting it grow entry by entry.
+ *
+ * @see JSONParser#parse(java.io.Reader, ContainerFactory)
+ * @see SizeProfile
+ */
+public interface SizedContainerFactory extends ContainerFactory {
+
+    /**
+     * @param depth - Number of containers enclosing this one, 0 for the root.
+     * @param key - Key of the entry holding this container in its parent
+     * object, or null for the root and for an element of an array.
+     * @param sizeHint - Number of entries this container held the last times
+     * it was seen at the same place, or 0 if unknown.
+     * @return A Map instance to store JSON object, or null if you want to use
+     * JSONObject.
+     */
+    Map createObjectContainer(int depth, String key, int sizeHint);
+
+    /**
+     * @param depth - Number of containers enclosing this one, 0 for the root.
+     * @param key - Key of the entry holding this container in its parent
+     * object, or null for the root and for an element of an array.
+     * @param sizeHint - Number of elements this container held the last
+     * times it was seen at the same place, or 0 if unknown.
+     * @return A List instance to store JSON array, or null if you want to use
+     * JSONArray.
+     */
+    List createArrayContainer(int depth, String key, int sizeHint);
+
+    @Override
+    default Map createObjectContainer() {
+        return createObjectContainer(0, null, 0);
+    }
+
+    @Override
+    default List creatArrayContainer() {
+        return createArrayContainer(0, null, 0);
+    }
+}
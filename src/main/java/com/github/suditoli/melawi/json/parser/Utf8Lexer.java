@@ -0,0 +1,676 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.StringSlice;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scanner working on UTF-8 encoded bytes. Structural characters, numbers and
+ * literals are matched on the raw bytes; only the content of string tokens is
+ * decoded into characters. Malformed byte sequences inside strings are
+ * replaced with U+FFFD, as {@link java.io.InputStreamReader} would do.
+ *
+ * Positions reported by this scanner are byte offsets from the beginning of
+ * the input, capped at Integer.MAX_VALUE for very large inputs.
+ */
+class Utf8Lexer extends Lexer {
+
+    /**
+     * initial size of the window used for stream and direct buffer input
+     */
+    private static final int WINDOW_SIZE = 8192;
+
+    /**
+     * initial size of the buffer used to decode string contents
+     */
+    private static final int CHARS_SIZE = 256;
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    /**
+     * the bytes being scanned, either the caller's array or the window
+     */
+    private byte[] buf;
+
+    /**
+     * the current scan position in buf
+     */
+    private int pos;
+
+    /**
+     * the end of the valid bytes in buf
+     */
+    private int limit;
+
+    /**
+     * the first byte in buf that has to survive a refill
+     */
+    private int mark;
+
+    /**
+     * the input position of buf[0]
+     */
+    private long base;
+
+    /**
+     * the input position of the beginning of the current token
+     */
+    private long tokenStart;
+
+    /**
+     * true until the first token has been scanned
+     */
+    private boolean atStart;
+
+    private InputStream in;
+
+    /**
+     * the buffers copied into the window one after the other
+     */
+    private ByteBuffer[] srcs;
+
+    /**
+     * the input position and the buffer position of the first byte of every
+     * source buffer, to slice strings from them
+     */
+    private long[] srcStarts;
+    private int[] srcPositions;
+    private int srcIndex;
+    private byte[] window;
+    private char[] chars = new char[CHARS_SIZE];
+
+    /**
+     * Resets the scanner to read the given range of an array. The array is
+     * scanned in place and never written to.
+     */
+    void yyreset(byte[] b, int off, int len) {
+        reset(null, null);
+        buf = b;
+        pos = mark = off;
+        limit = off + len;
+        base = -off;
+    }
+
+    /**
+     * Resets the scanner to read a range of an array holding the rest of an
+     * input whose beginning has been scanned already, so without looking for
+     * a byte order mark.
+     */
+    void yycontinue(byte[] b, int off, int len) {
+        yyreset(b, off, len);
+        atStart = false;
+    }
+
+    /**
+     * Resets the scanner to read from a new input stream. Does not close the
+     * old stream.
+     */
+    void yyreset(InputStream in) {
+        reset(in, null);
+    }
+
+    /**
+     * Resets the scanner to read the remaining bytes of the buffer. Heap
+     * buffers are scanned in place; direct and mapped buffers are copied into
+     * the window chunk by chunk. The position of the buffer is not modified.
+     */
+    void yyreset(ByteBuffer bb) {
+        if (bb.hasArray()) {
+            yyreset(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+        } else {
+            reset(null, new ByteBuffer[]{bb.duplicate()});
+        }
+    }
+
+    /**
+     * Resets the scanner to read the remaining bytes of the buffers one after
+     * the other, as if they were a single input. Used for files mapped in
+     * several windows. The positions of the buffers are not modified.
+     */
+    void yyreset(ByteBuffer[] bbs) {
+        ByteBuffer[] srcs = new ByteBuffer[bbs.length];
+        for (int i = 0; i < bbs.length; i++) {
+            srcs[i] = bbs[i].duplicate();
+        }
+        reset(null, srcs);
+    }
+
+    private void reset(InputStream in, ByteBuffer[] srcs) {
+        this.in = in;
+        this.srcs = srcs;
+        srcIndex = 0;
+        if (srcs != null) {
+            srcStarts = new long[srcs.length];
+            srcPositions = new int[srcs.length];
+            long start = 0;
+            for (int i = 0; i < srcs.length; i++) {
+                srcStarts[i] = start;
+                srcPositions[i] = srcs[i].position();
+                start += srcs[i].remaining();
+            }
+        }
+        if (window == null && (in != null || srcs != null)) {
+            window = new byte[WINDOW_SIZE];
+        }
+        buf = window;
+        pos = limit = mark = 0;
+        base = tokenStart = 0;
+        atStart = true;
+    }
+
+    @Override
+    int getPosition() {
+        return (int) Math.min(tokenStart, Integer.MAX_VALUE);
+    }
+
+    @Override
+    int bufferCapacity() {
+        return (window == null ? 0 : window.length) + chars.length;
+    }
+
+    /**
+     * Refills the window, keeping everything from mark on.
+     *
+     * @return false iff there is no more input.
+     */
+    private boolean refill() throws IOException {
+        if (in == null && srcs == null) {
+            return false;
+        }
+        if (mark > 0) {
+            System.arraycopy(buf, mark, buf, 0, limit - mark);
+            base += mark;
+            pos -= mark;
+            limit -= mark;
+            mark = 0;
+        }
+        if (limit == buf.length) {
+            byte[] newBuffer = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, newBuffer, 0, limit);
+            buf = window = newBuffer;
+        }
+        int numRead;
+        if (in != null) {
+            numRead = in.read(buf, limit, buf.length - limit);
+        } else {
+            while (srcIndex < srcs.length && !srcs[srcIndex].hasRemaining()) {
+                srcIndex++;
+            }
+            if (srcIndex == srcs.length) {
+                return false;
+            }
+            ByteBuffer src = srcs[srcIndex];
+            numRead = Math.min(src.remaining(), buf.length - limit);
+            src.get(buf, limit, numRead);
+        }
+        if (numRead > 0) {
+            limit += numRead;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the unsigned byte at pos + i, or -1 at the end of input.
+     */
+    private int peek(int i) throws IOException {
+        while (pos + i >= limit) {
+            if (!refill()) {
+                return -1;
+            }
+        }
+        return buf[pos + i] & 0xFF;
+    }
+
+    @Override
+    int yylex() throws IOException, ParseException {
+        if (atStart) {
+            skipByteOrderMark();
+        }
+        while (true) {
+            if (pos >= limit) {
+                mark = pos;
+                if (!refill()) {
+                    tokenStart = base + pos;
+                    return token(Yytoken.TYPE_EOF, null);
+                }
+            }
+            mark = pos;
+            tokenStart = base + pos;
+            int c = buf[pos] & 0xFF;
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                    pos++;
+                    break;
+                case '{':
+                    pos++;
+                    return token(Yytoken.TYPE_LEFT_BRACE, null);
+                case '}':
+                    pos++;
+                    return token(Yytoken.TYPE_RIGHT_BRACE, null);
+                case '[':
+                    pos++;
+                    return token(Yytoken.TYPE_LEFT_SQUARE, null);
+                case ']':
+                    pos++;
+                    return token(Yytoken.TYPE_RIGHT_SQUARE, null);
+                case ',':
+                    pos++;
+                    return token(Yytoken.TYPE_COMMA, null);
+                case ':':
+                    pos++;
+                    return token(Yytoken.TYPE_COLON, null);
+                case '"':
+                    pos++;
+                    if (stringSlices && !keyExpected && in == null) {
+                        Object slice = scanSlice();
+                        if (slice != null) {
+                            return token(Yytoken.TYPE_VALUE, slice);
+                        }
+                    }
+                    String s = scanString();
+                    return s == null ? token(Yytoken.TYPE_EOF, null) : token(Yytoken.TYPE_VALUE, s);
+                case 't':
+                    scanLiteral("true");
+                    return token(Yytoken.TYPE_VALUE, Boolean.TRUE);
+                case 'f':
+                    scanLiteral("false");
+                    return token(Yytoken.TYPE_VALUE, Boolean.FALSE);
+                case 'n':
+                    scanLiteral("null");
+                    return token(Yytoken.TYPE_VALUE, null);
+                case '-':
+                case '0':
+                case '1':
+                case '2':
+                case '3':
+                case '4':
+                case '5':
+                case '6':
+                case '7':
+                case '8':
+                case '9':
+                    return token(Yytoken.TYPE_VALUE, scanNumber());
+                default:
+                    throw unexpectedChar();
+            }
+        }
+    }
+
+    private void skipByteOrderMark() throws IOException {
+        atStart = false;
+        mark = pos;
+        if (peek(0) == 0xEF && peek(1) == 0xBB && peek(2) == 0xBF) {
+            pos += 3;
+        }
+    }
+
+    @Override
+    int skipValue() throws IOException {
+        if (atStart) {
+            skipByteOrderMark();
+        }
+        int first = -1;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (pos >= limit) {
+                /* drop what has been skipped so that the window does not grow */
+                mark = pos;
+                if (!refill()) {
+                    return first;
+                }
+            }
+            int c = buf[pos];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 0) {
+                        pos++;
+                        return first;
+                    }
+                }
+                pos++;
+                continue;
+            }
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                case ',':
+                case ':':
+                case ']':
+                case '}':
+                    if (first == -1 && (c == ' ' || c == '\t' || c == '\n' || c == '\r')) {
+                        break;
+                    }
+                    if (depth == 0) {
+                        return first == -1 ? c : first;
+                    }
+                    if ((c == ']' || c == '}') && --depth == 0) {
+                        pos++;
+                        return first;
+                    }
+                    break;
+                case '[':
+                case '{':
+                case '"':
+                    if (first == -1) {
+                        first = c;
+                        tokenStart = base + pos;
+                    } else if (depth == 0) {
+                        return first;
+                    }
+                    if (c == '"') {
+                        inString = true;
+                    } else {
+                        depth++;
+                    }
+                    break;
+                default:
+                    if (first == -1) {
+                        first = c & 0xFF;
+                        tokenStart = base + pos;
+                    }
+                    break;
+            }
+            pos++;
+        }
+    }
+
+    private ParseException unexpectedChar() throws IOException {
+        return new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_CHAR, decodeChar());
+    }
+
+    /**
+     * Decodes the character at pos for error reporting.
+     */
+    private Character decodeChar() throws IOException {
+        int b = buf[pos] & 0xFF;
+        int n = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC0 ? 1 : 0;
+        int cp = n == 0 ? b : b & (0x3F >> n);
+        for (int i = 1; i <= n; i++) {
+            int cb = peek(i);
+            if ((cb & 0xC0) != 0x80) {
+                return (char) b;
+            }
+            cp = (cp << 6) | (cb & 0x3F);
+        }
+        return cp < 0x10000 ? (char) cp : REPLACEMENT;
+    }
+
+    private void scanLiteral(String literal) throws IOException, ParseException {
+        for (int i = 1; i < literal.length(); i++) {
+            if (peek(i) != literal.charAt(i)) {
+                throw unexpectedChar();
+            }
+        }
+        pos += literal.length();
+    }
+
+    /**
+     * INT = [-]?[0-9]+, DOUBLE = {INT}((\.[0-9]+)?([eE][-+]?[0-9]+)?)
+     */
+    private Number scanNumber() throws IOException, ParseException {
+        int i = 0;
+        boolean negative = buf[pos] == '-';
+        if (negative) {
+            i++;
+        }
+        int c = peek(i);
+        if (!isDigit(c)) {
+            throw unexpectedChar();
+        }
+        /* accumulate the integer part negatively, as Long.parseLong does */
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        boolean overflow = false;
+        do {
+            int digit = c - '0';
+            if (overflow || result < multmin || result * 10 < limit + digit) {
+                overflow = true;
+            } else {
+                result = result * 10 - digit;
+            }
+            c = peek(++i);
+        } while (isDigit(c));
+        boolean isDouble = false;
+        if (peek(i) == '.' && isDigit(peek(i + 1))) {
+            isDouble = true;
+            i++;
+            while (isDigit(peek(++i))) {
+            }
+        }
+        int e = peek(i);
+        if (e == 'e' || e == 'E') {
+            int sign = peek(i + 1);
+            int j = sign == '+' || sign == '-' ? i + 2 : i + 1;
+            if (isDigit(peek(j))) {
+                isDouble = true;
+                i = j;
+                while (isDigit(peek(++i))) {
+                }
+            }
+        }
+        if (!isDouble && !overflow && numberFactory == null) {
+            pos += i;
+            return box(negative ? result : -result);
+        }
+        if (i > chars.length) {
+            chars = new char[i];
+        }
+        for (int j = 0; j < i; j++) {
+            chars[j] = (char) buf[pos + j];
+        }
+        pos += i;
+        if (numberFactory != null) {
+            Number number = numberFactory.createNumber(chars, 0, i, isDouble);
+            if (number != null) {
+                return number;
+            } else if (!isDouble && !overflow) {
+                return box(negative ? result : -result);
+            }
+        }
+        if (isDouble) {
+            return DoubleParser.parseDouble(chars, 0, i);
+        }
+        return new BigInteger(new String(chars, 0, i));
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Scans the rest of a string token holding only ASCII characters without
+     * escape sequences, pos being just after the opening quote.
+     *
+     * @return a slice of the caller's array or of the source buffer holding
+     * the string, or else a String decoded straight from the window; or null,
+     * with pos unchanged, if the string has to be decoded by
+     * {@link #scanString()}.
+     */
+    private Object scanSlice() throws IOException {
+        int n = 0;
+        while (true) {
+            int b = peek(n);
+            if (b == '"') {
+                break;
+            } else if (b == '\\' || b < 0 || b >= 0x80) {
+                return null;
+            }
+            n++;
+        }
+        // like Yylex, a string is reported at its closing quote
+        tokenStart = base + pos + n;
+        int start = pos;
+        pos += n + 1;
+        if (srcs == null) {
+            return new StringSlice(buf, start, start + n);
+        }
+        long inputStart = base + start;
+        for (int i = srcs.length - 1; i >= 0; i--) {
+            if (srcStarts[i] <= inputStart) {
+                if (inputStart + n <= srcStarts[i] + srcs[i].limit() - srcPositions[i]) {
+                    int offset = srcPositions[i] + (int) (inputStart - srcStarts[i]);
+                    return new StringSlice(srcs[i], offset, offset + n);
+                }
+                break;
+            }
+        }
+        return new String(buf, start, n, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Scans the rest of a string token, pos being just after the opening
+     * quote.
+     *
+     * @return the decoded string, or null if the input ends inside it.
+     */
+    private String scanString() throws IOException {
+        int n = 0;
+        while (true) {
+            if (pos >= limit) {
+                mark = pos;
+                if (!refill()) {
+                    tokenStart = base + pos;
+                    return null;
+                }
+            }
+            int b = buf[pos];
+            if (b == '"') {
+                // like Yylex, a string is reported at its closing quote
+                tokenStart = base + pos;
+                pos++;
+                return keyExpected && keyCache != null ? keyCache.get(chars, 0, n) : new String(chars, 0, n);
+            }
+            if (n + 2 > chars.length) {
+                char[] newChars = new char[chars.length * 2];
+                System.arraycopy(chars, 0, newChars, 0, n);
+                chars = newChars;
+            }
+            if (b == '\\') {
+                mark = pos;
+                n = scanEscape(n);
+            } else if (b >= 0) {
+                chars[n++] = (char) b;
+                pos++;
+            } else {
+                mark = pos;
+                n = decode(n);
+            }
+        }
+    }
+
+    private int scanEscape(int n) throws IOException {
+        int c = peek(1);
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                chars[n++] = (char) c;
+                break;
+            case 'b':
+                chars[n++] = '\b';
+                break;
+            case 'f':
+                chars[n++] = '\f';
+                break;
+            case 'n':
+                chars[n++] = '\n';
+                break;
+            case 'r':
+                chars[n++] = '\r';
+                break;
+            case 't':
+                chars[n++] = '\t';
+                break;
+            case 'u':
+                int ch = 0;
+                for (int i = 2; i < 6; i++) {
+                    int d = Character.digit(peek(i), 16);
+                    if (d < 0) {
+                        return keepBackslash(n);
+                    }
+                    ch = (ch << 4) | d;
+                }
+                chars[n++] = (char) ch;
+                pos += 6;
+                return n;
+            default:
+                return keepBackslash(n);
+        }
+        pos += 2;
+        return n;
+    }
+
+    /**
+     * Unknown escapes are kept as they are, like Yylex does.
+     */
+    private int keepBackslash(int n) {
+        chars[n++] = '\\';
+        pos++;
+        return n;
+    }
+
+    /**
+     * Decodes the multi-byte sequence at pos into chars[n].
+     *
+     * @return the new number of chars.
+     */
+    private int decode(int n) throws IOException {
+        int b = buf[pos] & 0xFF;
+        int len;
+        int cp;
+        int min;
+        if (b >= 0xC2 && b <= 0xDF) {
+            len = 2;
+            cp = b & 0x1F;
+            min = 0x80;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            len = 3;
+            cp = b & 0x0F;
+            min = 0x800;
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            len = 4;
+            cp = b & 0x07;
+            min = 0x10000;
+        } else {
+            chars[n++] = REPLACEMENT;
+            pos++;
+            return n;
+        }
+        for (int i = 1; i < len; i++) {
+            int cb = peek(i);
+            if ((cb & 0xC0) != 0x80) {
+                chars[n++] = REPLACEMENT;
+                pos += i;
+                return n;
+            }
+            cp = (cp << 6) | (cb & 0x3F);
+        }
+        pos += len;
+        if (cp < min || cp > 0x10FFFF || (cp >= 0xD800 && cp <= 0xDFFF)) {
+            chars[n++] = REPLACEMENT;
+        } else if (cp < 0x10000) {
+            chars[n++] = (char) cp;
+        } else {
+            chars[n++] = Character.highSurrogate(cp);
+            chars[n++] = Character.lowSurrogate(cp);
+        }
+        return n;
+    }
+}
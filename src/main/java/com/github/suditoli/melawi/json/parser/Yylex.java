@@ -1,7 +1,9 @@
 /* The following code was generated by JFlex 1.4.2 */
 package com.github.suditoli.melawi.json.parser;
 
-class Yylex {
+import com.github.suditoli.melawi.json.StringSlice;
+
+class Yylex extends Lexer {
 
     /**
      * This character denotes the end of file
@@ -13,6 +15,8 @@ class Yylex {
      */
     private static final int ZZ_BUFFERSIZE = 16384;
 
+    private static final char[] NO_CHARS = new char[0];
+
     /**
      * lexical states
      */
@@ -230,7 +234,13 @@ class Yylex {
      * this buffer contains the current text to be matched and is the source of
      * the yytext() string
      */
-    private char[] zzBuffer = new char[ZZ_BUFFERSIZE];
+    private char[] zzBuffer = NO_CHARS;
+
+    /**
+     * the buffer filled from zzReader, allocated when a reader is first set;
+     * zzBuffer is the caller's array when scanning one in place
+     */
+    private char[] readerBuffer;
 
     /**
      * the textposition at the last accepting state
@@ -280,12 +290,170 @@ class Yylex {
     private boolean zzAtEOF;
 
     /* user code: */
-    private StringBuffer sb = new StringBuffer();
+    private StringBuilder sb = new StringBuilder();
+    private char[] keyChars = new char[KeyCache.MAX_KEY_LENGTH];
+
+    /**
+     * the whole input if it is known, to return string values as slices
+     */
+    String source;
+
+    /**
+     * the position of the first character of the current string
+     */
+    private int stringStart;
+
+    /**
+     * true while the current string has no escape sequence, and is not copied
+     * into sb because it will be returned as a slice of source
+     */
+    private boolean slicing;
+
+    /**
+     * Matches the rest of a string without escape sequences in a single pass
+     * over the buffer, the opening quote having just been matched.
+     *
+     * @return the value of the string, with the closing quote matched; or null,
+     * with nothing matched, if the string has an escape sequence or does not
+     * end in the buffer, and has to go through the STRING_BEGIN state.
+     */
+    private Object scanPlainString() {
+        char[] buffer = zzBuffer;
+        int start = zzMarkedPos;
+        int end = zzEndRead;
+        int i = start;
+        while (i < end) {
+            char c = buffer[i];
+            if (c == '"') {
+                break;
+            } else if (c == '\\') {
+                return null;
+            }
+            i++;
+        }
+        if (i == end) {
+            return null;
+        }
+        int len = i - start;
+        Object value;
+        if (slicing) {
+            slicing = false;
+            value = new StringSlice(source, stringStart, stringStart + len);
+        } else if (keyExpected && keyCache != null) {
+            value = keyCache.get(buffer, start, len);
+        } else {
+            value = new String(buffer, start, len);
+        }
+        // like a match of the closing quote, which the string is reported at
+        yychar += i - zzStartRead;
+        zzStartRead = zzCurrentPos = i;
+        zzMarkedPos = i + 1;
+        return value;
+    }
+
+    /**
+     * Append the value of an escape sequence, after copying the preceding
+     * characters if the current string was to be sliced.
+     */
+    private void append(char c) {
+        if (slicing) {
+            sb.append(source, stringStart, yychar);
+            slicing = false;
+        }
+        sb.append(c);
+    }
 
     int getPosition() {
         return yychar;
     }
 
+    private String cachedKey() {
+        int len = sb.length();
+        if (len > keyChars.length) {
+            return sb.toString();
+        }
+        sb.getChars(0, len, keyChars, 0);
+        return keyCache.get(keyChars, 0, len);
+    }
+
+    int bufferCapacity() {
+        return (readerBuffer == null ? 0 : readerBuffer.length) + sb.capacity();
+    }
+
+    int skipValue() throws java.io.IOException {
+        int first = -1;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (zzMarkedPos >= zzEndRead) {
+                /* drop what has been skipped so that the buffer does not grow */
+                yychar += zzMarkedPos - zzStartRead;
+                zzStartRead = zzCurrentPos = zzMarkedPos;
+                if (zzRefill()) {
+                    return first;
+                }
+            }
+            char c = zzBuffer[zzMarkedPos];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 0) {
+                        zzMarkedPos++;
+                        return first;
+                    }
+                }
+                zzMarkedPos++;
+                continue;
+            }
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                case ',':
+                case ':':
+                case ']':
+                case '}':
+                    if (first == -1 && (c == ' ' || c == '\t' || c == '\n' || c == '\r')) {
+                        break;
+                    }
+                    if (depth == 0) {
+                        return first == -1 ? c : first;
+                    }
+                    if ((c == ']' || c == '}') && --depth == 0) {
+                        zzMarkedPos++;
+                        return first;
+                    }
+                    break;
+                case '[':
+                case '{':
+                case '"':
+                    if (first == -1) {
+                        first = c;
+                    } else if (depth == 0) {
+                        return first;
+                    }
+                    if (c == '"') {
+                        inString = true;
+                    } else {
+                        depth++;
+                    }
+                    break;
+                default:
+                    if (first == -1) {
+                        first = c;
+                    }
+                    break;
+            }
+            zzMarkedPos++;
+        }
+    }
+
     /**
      * Creates a new scanner There is also a java.io.InputStream version of this
      * constructor.
@@ -293,7 +461,7 @@ class Yylex {
      * @param in the java.io.Reader to read input from.
      */
     Yylex(java.io.Reader in) {
-        this.zzReader = in;
+        yyreset(in);
     }
 
     /**
@@ -336,6 +504,10 @@ class Yylex {
      * @exception java.io.IOException if any I/O-Error occurs
      */
     private boolean zzRefill() throws java.io.IOException {
+        if (zzReader == null) {
+            /* an array scanned in place holds the whole input */
+            return true;
+        }
 
         /* first: make room (if you can) */
         if (zzStartRead > 0) {
@@ -355,7 +527,7 @@ class Yylex {
             /* if not: blow it up */
             char newBuffer[] = new char[zzCurrentPos * 2];
             System.arraycopy(zzBuffer, 0, newBuffer, 0, zzBuffer.length);
-            zzBuffer = newBuffer;
+            zzBuffer = readerBuffer = newBuffer;
         }
 
         /* finally: fill the buffer with new input */
@@ -407,12 +579,45 @@ class Yylex {
      */
     public final void yyreset(java.io.Reader reader) {
         zzReader = reader;
+        if (reader == null) {
+            zzBuffer = NO_CHARS;
+        } else {
+            if (readerBuffer == null) {
+                readerBuffer = new char[ZZ_BUFFERSIZE];
+            }
+            zzBuffer = readerBuffer;
+        }
         zzAtBOL = true;
         zzAtEOF = false;
         zzEndRead = zzStartRead = 0;
         zzCurrentPos = zzMarkedPos = 0;
         yyline = yychar = yycolumn = 0;
         zzLexicalState = YYINITIAL;
+        source = null;
+    }
+
+    /**
+     * Resets the scanner to read a range of an array in place, without
+     * copying it. Positions are relative to off.
+     */
+    void yyreset(char[] b, int off, int len) {
+        yyreset((java.io.Reader) null);
+        zzBuffer = b;
+        zzStartRead = zzCurrentPos = zzMarkedPos = off;
+        zzEndRead = off + len;
+    }
+
+    /**
+     * Resets the scanner to read a string. Its chars are copied once into the
+     * reader buffer if it is large enough, or else into an array of the size
+     * of the string, which is scanned in place.
+     */
+    void yyreset(String s) {
+        int len = s.length();
+        char[] b = readerBuffer != null && readerBuffer.length >= len ? readerBuffer : new char[len];
+        s.getChars(0, len, b, 0);
+        yyreset(b, 0, len);
+        source = s;
     }
 
     /**
@@ -503,10 +708,11 @@ class Yylex {
      * Resumes scanning until the next regular expression is matched, the end of
      * input is encountered or an I/O-Error occurs.
      *
-     * @return the next token
+     * @return the type of the next token, Yytoken.TYPE_EOF at the end of
+     * input
      * @exception java.io.IOException if any I/O-Error occurs
      */
-    public Yytoken yylex() throws java.io.IOException, ParseException {
+    public int yylex() throws java.io.IOException, ParseException {
         int zzInput;
         int zzAction;
 
@@ -578,43 +784,60 @@ class Yylex {
 
             switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {
                 case 11:
-                    sb.append(yytext());
+                    if (!slicing) {
+                        sb.append(yytext());
+                    }
                 case 25:
                     break;
                 case 4:
-                    sb = null;
-                    sb = new StringBuffer();
+                    stringStart = yychar + 1;
+                    slicing = stringSlices && source != null && !keyExpected;
+                    Object plain = scanPlainString();
+                    if (plain != null) {
+                        return token(Yytoken.TYPE_VALUE, plain);
+                    }
+                    sb.setLength(0);
                     yybegin(STRING_BEGIN);
                 case 26:
                     break;
                 case 16:
-                    sb.append('\b');
+                    append('\b');
                 case 27:
                     break;
                 case 6:
-                    return new Yytoken(Yytoken.TYPE_RIGHT_BRACE, null);
+                    return token(Yytoken.TYPE_RIGHT_BRACE, null);
                 case 28:
                     break;
                 case 23:
                     Boolean val = Boolean.valueOf(yytext());
-                    return new Yytoken(Yytoken.TYPE_VALUE, val);
+                    return token(Yytoken.TYPE_VALUE, val);
                 case 29:
                     break;
                 case 22:
-                    return new Yytoken(Yytoken.TYPE_VALUE, null);
+                    return token(Yytoken.TYPE_VALUE, null);
                 case 30:
                     break;
                 case 13:
                     yybegin(YYINITIAL);
-                    return new Yytoken(Yytoken.TYPE_VALUE, sb.toString());
+                    if (slicing) {
+                        slicing = false;
+                        return token(Yytoken.TYPE_VALUE, new StringSlice(source, stringStart, yychar));
+                    }
+                    return token(Yytoken.TYPE_VALUE, keyExpected && keyCache != null ? cachedKey() : sb.toString());
                 case 31:
                     break;
                 case 12:
-                    sb.append('\\');
+                    append('\\');
                 case 32:
                     break;
                 case 21:
-                    return new Yytoken(Yytoken.TYPE_VALUE, Double.valueOf(yytext()));
+                    if (numberFactory != null) {
+                        Number number = numberFactory.createNumber(zzBuffer, zzStartRead, yylength(), true);
+                        if (number != null) {
+                            return token(Yytoken.TYPE_VALUE, number);
+                        }
+                    }
+                    return token(Yytoken.TYPE_VALUE, DoubleParser.parseDouble(zzBuffer, zzStartRead, yylength()));
                 case 33:
                     break;
                 case 1:
@@ -622,60 +845,66 @@ class Yylex {
                 case 34:
                     break;
                 case 8:
-                    return new Yytoken(Yytoken.TYPE_RIGHT_SQUARE, null);
+                    return token(Yytoken.TYPE_RIGHT_SQUARE, null);
                 case 35:
                     break;
                 case 19:
-                    sb.append('\r');
+                    append('\r');
                 case 36:
                     break;
                 case 15:
-                    sb.append('/');
+                    append('/');
                 case 37:
                     break;
                 case 10:
-                    return new Yytoken(Yytoken.TYPE_COLON, null);
+                    return token(Yytoken.TYPE_COLON, null);
                 case 38:
                     break;
                 case 14:
-                    sb.append('"');
+                    append('"');
                 case 39:
                     break;
                 case 5:
-                    return new Yytoken(Yytoken.TYPE_LEFT_BRACE, null);
+                    return token(Yytoken.TYPE_LEFT_BRACE, null);
                 case 40:
                     break;
                 case 17:
-                    sb.append('\f');
+                    append('\f');
                 case 41:
                     break;
                 case 24: 
                     try {
                     int ch = Integer.parseInt(yytext().substring(2), 16);
-                    sb.append((char) ch);
+                    append((char) ch);
                 } catch (Exception e) {
                     throw new ParseException(yychar, ParseException.ERROR_UNEXPECTED_EXCEPTION, e);
                 }
                 case 42:
                     break;
                 case 20:
-                    sb.append('\t');
+                    append('\t');
                 case 43:
                     break;
                 case 7:
-                    return new Yytoken(Yytoken.TYPE_LEFT_SQUARE, null);
+                    return token(Yytoken.TYPE_LEFT_SQUARE, null);
                 case 44:
                     break;
                 case 2:
-                    return new Yytoken(Yytoken.TYPE_VALUE, Long.valueOf(yytext()));
+                    if (numberFactory != null) {
+                        Number number = numberFactory.createNumber(zzBuffer, zzStartRead, yylength(), false);
+                        if (number != null) {
+                            return token(Yytoken.TYPE_VALUE, number);
+                        }
+                    }
+                    return token(Yytoken.TYPE_VALUE, integer(zzBuffer, zzStartRead, yylength()));
                 case 45:
                     break;
                 case 18:
-                    sb.append('\n');
+                    append('\n');
                 case 46:
                     break;
                 case 9:
-                    return new Yytoken(Yytoken.TYPE_COMMA, null);
+                    return token(Yytoken.TYPE_COMMA, null);
                 case 47:
                     break;
                 case 3:
@@ -685,7 +914,7 @@ class Yylex {
                 default:
                     if (zzInput == YYEOF && zzStartRead == zzCurrentPos) {
                         zzAtEOF = true;
-                        return null;
+                        return token(Yytoken.TYPE_EOF, null);
                     } else {
                         zzScanError(ZZ_NO_MATCH);
                     }
@@ -5,6 +5,10 @@ import com.github.suditoli.melawi.json.parser.JSONParser;
 import com.github.suditoli.melawi.xml.generate.XMLGenerator;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -14,6 +18,114 @@ public class TestJSON {
     public void test() {
         Assert.assertTrue(Boolean.TRUE);
     }
+
+    public static class Item {
+
+        public String sku;
+        public int quantity;
+        double price;
+        transient String cache = "x";
+    }
+
+    public static class Product {
+
+        private long id;
+        private boolean active;
+        private char grade = 'A';
+        private Float weight;
+        private List<Item> items;
+
+        public long getId() {
+            return id;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public char getGrade() {
+            return grade;
+        }
+    }
+
+    public static class Bundle extends Product {
+
+        short size = 2;
+        double discount = Double.NaN;
+        Item main;
+    }
+
+    public enum Size {
+        S, M {
+            @Override
+            public String toString() {
+                return "medium";
+            }
+        }
+    }
+
+    public static class Box {
+
+        int count = 1;
+        Size size = Size.M;
+    }
+
+    private static class Hidden {
+
+        private final String name = "h";
+        private final byte b = 1;
+    }
+
+    public static class Labeled {
+
+        String label = "l";
+
+        @Override
+        public String toString() {
+            return "labeled";
+        }
+    }
+
+    @Test
+    public void testBeans() throws Exception {
+        Item item = new Item();
+        item.sku = "a\"b";
+        item.quantity = 3;
+        item.price = 1.5;
+        Assert.assertEquals("{\"sku\":\"a\\\"b\",\"quantity\":3,\"price\":1.5}", JSONValue.toJSONString(item));
+
+        Bundle bundle = new Bundle();
+        Product product = bundle;
+        product.id = 7;
+        product.active = true;
+        product.weight = 0.5f;
+        product.items = Arrays.asList(item, null);
+        Assert.assertEquals("{\"id\":7,\"active\":true,\"grade\":\"A\",\"weight\":0.5,"
+                + "\"items\":[{\"sku\":\"a\\\"b\",\"quantity\":3,\"price\":1.5},null],"
+                + "\"size\":2,\"discount\":null,\"main\":null}", JSONValue.toJSONString(bundle));
+        Assert.assertEquals("[{\"name\":\"h\",\"b\":1}]", JSONValue.toJSONString(new Object[]{new Hidden()}));
+        Assert.assertEquals("labeled", JSONValue.toJSONString(new Labeled()));
+        Assert.assertEquals("\"c\"", JSONValue.toJSONString('c'));
+        Assert.assertEquals("[\"S\",\"M\"]", JSONValue.toJSONString(Size.values()));
+        Box box = new Box();
+        Assert.assertEquals("{\"count\":1,\"size\":\"M\"}", JSONValue.toJSONString(box));
+        Assert.assertEquals(Size.M, new JSONParser().parse(JSONValue.toJSONString(box), Box.class).size);
+        Object object = new Object();
+        Assert.assertEquals(object.toString(), JSONValue.toJSONString(object));
+        Random random = new Random();
+        Assert.assertEquals(random.toString(), JSONValue.toJSONString(random));
+    }
+
+    @Test
+    public void testRegisterSerializer() {
+        JSONValue.registerSerializer(Labeled.class, (value, out) -> JSONValue.writeJSONString(value.label, out));
+        try {
+            Assert.assertEquals("[\"l\"]", JSONValue.toJSONString(Collections.singletonList(new Labeled())));
+        } finally {
+            JSONValue.registerSerializer(Labeled.class, null);
+        }
+        Assert.assertEquals("labeled", JSONValue.toJSONString(new Labeled()));
+    }
     
     public static void main(String[] args) throws Exception {
         System.out.println("kok error?"); //Problem: Project Problem: Project's main artifact is processed through maven-shade-plugin, resolvable by: org.netbeans.modules.maven.problems.ProblemReporterImpl$MavenProblemResolver@3f343af1 unresolved
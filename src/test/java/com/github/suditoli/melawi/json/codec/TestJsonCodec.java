@@ -0,0 +1,154 @@
+package com.github.suditoli.melawi.json.codec;
+
+import com.github.suditoli.melawi.json.JSONException;
+import com.github.suditoli.melawi.json.parser.JSONParser;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJsonCodec {
+
+    public enum Status {
+        OPEN, PAID
+    }
+
+    @JsonCodec
+    public static class Line {
+
+        String sku;
+        int quantity;
+        Set<String> tags;
+    }
+
+    @JsonCodec
+    public static class Order {
+
+        long id;
+        String customer;
+        Status status;
+        List<Line> lines;
+        Map<String, Integer> counts;
+        BigDecimal total;
+        char grade;
+        Double discount;
+        transient int cache;
+        private boolean paid;
+
+        public boolean isPaid() {
+            return paid;
+        }
+
+        public void setPaid(boolean paid) {
+            this.paid = paid;
+        }
+    }
+
+    @JsonCodec
+    public static class RushOrder extends Order {
+
+        int priority;
+        List<List<Long>> slots;
+        List<String>[] groups;
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        String s = "{\"id\":7,\"customer\":\"Ann\",\"status\":\"PAID\",\"paid\":true,"
+                + "\"lines\":[{\"sku\":\"a\",\"quantity\":2,\"tags\":[\"x\",\"y\"],\"note\":[1,{}]},null],"
+                + "\"counts\":{\"a\":1,\"b\":null},\"total\":1.50,\"grade\":\"B\",\"discount\":null,"
+                + "\"cache\":5,\"extra\":{\"x\":[1,2]}}";
+        Order order = new JSONParser().parse(s, Order.class);
+        Assert.assertEquals(7L, order.id);
+        Assert.assertEquals("Ann", order.customer);
+        Assert.assertEquals(Status.PAID, order.status);
+        Assert.assertTrue(order.isPaid());
+        Assert.assertEquals(2, order.lines.size());
+        Assert.assertEquals("a", order.lines.get(0).sku);
+        Assert.assertEquals(2, order.lines.get(0).quantity);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("x", "y")), order.lines.get(0).tags);
+        Assert.assertNull(order.lines.get(1));
+        Assert.assertEquals(Integer.valueOf(1), order.counts.get("a"));
+        Assert.assertTrue(order.counts.containsKey("b"));
+        Assert.assertEquals(new BigDecimal("1.50"), order.total);
+        Assert.assertEquals('B', order.grade);
+        Assert.assertNull(order.discount);
+        Assert.assertEquals(0, order.cache);
+
+        Line[] lines = new JSONParser().parse("[{\"sku\":\"b\"},{\"quantity\":3}]", Line[].class);
+        Assert.assertEquals("b", lines[0].sku);
+        Assert.assertEquals(3, lines[1].quantity);
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        Order order = new Order();
+        order.id = 7;
+        order.customer = "A\"n";
+        order.status = Status.OPEN;
+        Line line = new Line();
+        line.sku = "a";
+        line.quantity = 2;
+        order.lines = new ArrayList<>(Arrays.asList(line, null));
+        order.counts = new LinkedHashMap<>();
+        order.counts.put("a", 1);
+        order.total = new BigDecimal("1.50");
+        order.grade = 'B';
+        order.cache = 5;
+        order.setPaid(true);
+        StringWriter out = new StringWriter();
+        Codecs.get(Order.class).write(order, out);
+        Assert.assertEquals("{\"id\":7,\"customer\":\"A\\\"n\",\"status\":\"OPEN\","
+                + "\"lines\":[{\"sku\":\"a\",\"quantity\":2,\"tags\":null},null],\"counts\":{\"a\":1},"
+                + "\"total\":1.50,\"grade\":\"B\",\"discount\":null,\"paid\":true}", out.toString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRoundTrip() throws Exception {
+        RushOrder order = new RushOrder();
+        order.id = 9;
+        order.priority = 2;
+        order.slots = Arrays.asList(Arrays.asList(1L, 2L), null);
+        order.groups = new List[]{Arrays.asList("a", "b"), null};
+        StringWriter out = new StringWriter();
+        Codecs.get(RushOrder.class).write(order, out);
+        RushOrder copy = new JSONParser().parse(out.toString(), RushOrder.class);
+        Assert.assertEquals(9L, copy.id);
+        Assert.assertEquals(2, copy.priority);
+        Assert.assertEquals(order.slots, copy.slots);
+        Assert.assertArrayEquals(order.groups, copy.groups);
+        StringWriter again = new StringWriter();
+        Codecs.get(RushOrder.class).write(copy, again);
+        Assert.assertEquals(out.toString(), again.toString());
+    }
+
+    @Test
+    public void testWrongInput() throws Exception {
+        try {
+            new JSONParser().parse("[1]", Order.class);
+            Assert.fail();
+        } catch (JSONException e) {
+            Assert.assertEquals("The current token at position 0 is not an object.", e.getMessage());
+        }
+        try {
+            new JSONParser().parse("{\"status\":\"LOST\"}", Order.class);
+            Assert.fail();
+        } catch (JSONException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(Status.class.getName()));
+        }
+        try {
+            Codecs.get(Status.class);
+            Assert.fail();
+        } catch (JSONException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("No codec generated"));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.suditoli.melawi.json.parser;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDoubleParser {
+
+    private static void check(String text) {
+        char[] chars = ("[" + text + "]").toCharArray();
+        double expected = Double.parseDouble(text);
+        double actual = DoubleParser.parseDouble(chars, 1, text.length());
+        if (Double.doubleToRawLongBits(expected) != Double.doubleToRawLongBits(actual)) {
+            Assert.fail(text + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static String randomText(Random random, int kind) {
+        switch (kind) {
+            case 0: {
+                double d = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE);
+                return Double.isNaN(d) || Double.isInfinite(d) ? "0.0" : Double.toString(d);
+            }
+            case 1: {
+                // halfway between two doubles: (2m + 1) * 2^(e - 1)
+                long m = (1L << 52) | (random.nextLong() & ((1L << 52) - 1));
+                int e = random.nextInt(120) - 60;
+                BigDecimal halfway = new BigDecimal(BigInteger.valueOf(2 * m + 1));
+                BigDecimal scale = new BigDecimal(BigInteger.ONE.shiftLeft(Math.abs(e)));
+                return (e >= 0 ? halfway.multiply(scale) : halfway.divide(scale)).toPlainString() + "e0";
+            }
+            case 2: {
+                StringBuilder sb = new StringBuilder();
+                int digits = 1 + random.nextInt(25);
+                for (int i = 0; i < digits; i++) {
+                    sb.append((char) ('0' + random.nextInt(10)));
+                }
+                return sb.append('.').append(random.nextInt(10)).append('e').append(random.nextInt(700) - 350).toString();
+            }
+            case 3:
+                return String.format(Locale.ROOT, "%." + (1 + random.nextInt(15)) + "f", random.nextDouble() * 180);
+            default: {
+                double d = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE);
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    return "1e400";
+                }
+                return new BigDecimal(d).round(new MathContext(1 + random.nextInt(19))).toString();
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeCases() {
+        String[] texts = {"0.0", "-0.0", "0e5", "1e-400", "-1e400", "1.7976931348623157e308",
+            "1.7976931348623159e308", "2.2250738585072011e-308", "2.2250738585072014E-308", "4.9e-324",
+            "2.4703282292062327e-324", "9007199254740993.0", "9223372036854775807.5", "18446744073709551615e-5",
+            "123456789012345678901234567890e-10", "0.000000000000000000000000000001", "1e23", "8.41e21"};
+        for (String text : texts) {
+            check(text);
+        }
+    }
+
+    @Test
+    public void testRandomEquivalence() {
+        Random random = new Random(19);
+        for (int i = 0; i < 200000; i++) {
+            String text = randomText(random, i % 5);
+            check(text);
+            check("-" + text);
+        }
+    }
+
+    /**
+     * Compare the time spent on the same numbers by Double.parseDouble on a
+     * String and by DoubleParser on the chars.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        char[][] numbers = new char[1 << 16][];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = randomText(random, i % 2 == 0 ? 3 : 0).toCharArray();
+        }
+        for (int round = 0; round < 10; round++) {
+            long bits = 0;
+            long start = System.nanoTime();
+            for (char[] number : numbers) {
+                bits ^= Double.doubleToRawLongBits(Double.parseDouble(new String(number)));
+            }
+            long jdk = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (char[] number : numbers) {
+                bits ^= Double.doubleToRawLongBits(DoubleParser.parseDouble(number, 0, number.length));
+            }
+            long fast = System.nanoTime() - start;
+            System.out.printf(Locale.ROOT, "Double.parseDouble %5.1f ns, DoubleParser %5.1f ns%s%n",
+                    (double) jdk / numbers.length, (double) fast / numbers.length, bits == 0 ? "" : ", results differ");
+        }
+    }
+}
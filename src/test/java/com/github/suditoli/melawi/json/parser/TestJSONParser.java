@@ -0,0 +1,963 @@
+package com.github.suditoli.melawi.json.parser;
+
+import com.github.suditoli.melawi.json.JSONArray;
+import com.github.suditoli.melawi.json.JSONException;
+import com.github.suditoli.melawi.json.JSONObject;
+import com.github.suditoli.melawi.json.JsonLinesWriter;
+import com.github.suditoli.melawi.json.LazyNumber;
+import com.github.suditoli.melawi.json.StringSlice;
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJSONParser {
+
+    private static final String DOCUMENT = "{\"name\":\"café € 😀\",\"escaped\":\"a\\\"b\\u00e9\\n\","
+            + "\"numbers\":[1,-2,3.5,1e3],\"flags\":[true,false,null],\"nested\":{\"empty\":[]}}";
+
+    @Test
+    public void testParseUtf8Bytes() throws Exception {
+        JSONParser parser = new JSONParser();
+        Object expected = parser.parse(DOCUMENT);
+        byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+
+        byte[] padded = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, padded, 2, bytes.length);
+        Assert.assertEquals(expected, parser.parse(padded, 2, bytes.length));
+        Assert.assertEquals(expected, parser.parse(new ByteArrayInputStream(bytes)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assert.assertEquals(expected, parser.parse(direct));
+        Assert.assertEquals(0, direct.position());
+
+        JSONObject object = (JSONObject) parser.parse(ByteBuffer.wrap(bytes));
+        Assert.assertEquals("café € 😀", object.getString("name"));
+        Assert.assertEquals(Long.valueOf(-2), ((JSONArray) object.get("numbers")).get(1));
+    }
+
+    @Test
+    public void testParseUtf8BytesErrorPosition() {
+        byte[] bytes = "[\"é\", x]".getBytes(StandardCharsets.UTF_8);
+        try {
+            new JSONParser().parse(bytes, 0, bytes.length);
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(ParseException.ERROR_UNEXPECTED_CHAR, pe.getErrorType());
+            Assert.assertEquals(7, pe.getPosition());
+        }
+    }
+
+    @Test
+    public void testParseFile() throws Exception {
+        Path file = Files.createTempFile("melawi", ".json");
+        try {
+            Files.write(file, DOCUMENT.getBytes(StandardCharsets.UTF_8));
+            JSONParser parser = new JSONParser();
+            Assert.assertEquals(parser.parse(DOCUMENT), parser.parseFile(file));
+
+            final StringBuilder keys = new StringBuilder();
+            parser.parseFile(file, new ContentHandlerAdapter() {
+                @Override
+                public boolean startObjectEntry(String key) {
+                    keys.append(key).append(' ');
+                    return true;
+                }
+            });
+            Assert.assertEquals("name escaped numbers flags nested empty ", keys.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSharedParsers() throws Exception {
+        final JSONParsers parsers = new JSONParsers(2);
+        final Object expected = new JSONParser().parse(DOCUMENT);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> parsers.parse(DOCUMENT)));
+            }
+            for (Future<Object> result : results) {
+                Assert.assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        JSONParser parser = parsers.borrow();
+        parsers.release(parser);
+        Assert.assertSame(parser, parsers.borrow());
+    }
+
+    @Test
+    public void testSharedParsersSettings() throws Exception {
+        JSONParsers parsers = new JSONParsers(1);
+        JSONParser parser = parsers.borrow();
+        parser.setStringSlices(true);
+        parser.setLazyNumbers(true);
+        parser.setHandWrittenLexer(true);
+        Assert.assertTrue(((JSONArray) parser.parse("[\"abc\",1]")).get(0) instanceof StringSlice);
+        parsers.release(parser);
+        Assert.assertSame(parser, parsers.borrow());
+        Assert.assertFalse(parser.isStringSlices());
+        Assert.assertFalse(parser.isLazyNumbers());
+        Assert.assertFalse(parser.isHandWrittenLexer());
+        parsers.release(parser);
+        JSONArray array = (JSONArray) parsers.parse("[\"abc\",1]");
+        Assert.assertEquals(String.class, array.get(0).getClass());
+        Assert.assertEquals(Long.class, array.get(1).getClass());
+
+        KeyCache keyCache = new KeyCache(16);
+        JSONParsers configured = new JSONParsers(1, JSONParsers.DEFAULT_MAX_CAPACITY, () -> {
+            JSONParser p = new JSONParser();
+            p.setKeyCache(keyCache);
+            return p;
+        });
+        parser = configured.borrow();
+        parser.setKeyCache(null);
+        configured.release(parser);
+        Assert.assertSame(keyCache, configured.borrow().getKeyCache());
+
+        JSONParser foreign = new JSONParser();
+        configured.release(foreign);
+        Assert.assertNotSame(foreign, configured.borrow());
+    }
+
+    @Test
+    public void testKeyCache() throws Exception {
+        JSONParser parser = new JSONParser();
+        KeyCache keyCache = new KeyCache(16);
+        parser.setKeyCache(keyCache);
+        JSONArray array = (JSONArray) parser.parse("[{\"id\":1,\"name\":\"id\"},{\"id\":2,\"name\":\"x\"}]");
+        byte[] bytes = "{\"id\":3}".getBytes(StandardCharsets.UTF_8);
+        JSONObject object = (JSONObject) parser.parse(bytes, 0, bytes.length);
+
+        String first = (String) ((JSONObject) array.get(0)).keySet().stream().filter("id"::equals).findFirst().get();
+        String second = (String) ((JSONObject) array.get(1)).keySet().stream().filter("id"::equals).findFirst().get();
+        String third = (String) object.keySet().iterator().next();
+        Assert.assertSame(first, second);
+        Assert.assertSame(first, third);
+        Assert.assertNotSame(first, ((JSONObject) array.get(0)).get("name"));
+        Assert.assertEquals(3, keyCache.getHitCount());
+        Assert.assertEquals(2, keyCache.getMissCount());
+
+        Assert.assertEquals(2, KeyCache.tableSize(1));
+        Assert.assertEquals(16, KeyCache.tableSize(9));
+        Assert.assertEquals(KeyCache.MAX_CAPACITY, KeyCache.tableSize(KeyCache.MAX_CAPACITY + 1));
+        Assert.assertEquals(KeyCache.MAX_CAPACITY, KeyCache.tableSize(Integer.MAX_VALUE));
+        try {
+            new KeyCache(0);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Invalid capacity: 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLazyNumbers() throws Exception {
+        String text = "{\"id\":12345678901,\"price\":1.50,\"big\":1e400,\"values\":[-0,2E+3]}";
+        JSONParser parser = new JSONParser();
+        parser.setLazyNumbers(true);
+        JSONObject object = (JSONObject) parser.parse(text);
+        Assert.assertTrue(object.get("id") instanceof LazyNumber);
+        Assert.assertEquals(12345678901L, object.getLong("id"));
+        Assert.assertEquals(1.5, object.getDouble("price"), 0);
+        Assert.assertEquals(1.5, ((JSONArray) parser.parse("[1.50]")).getDouble(0), 0);
+        Assert.assertEquals("1.50", object.get("price").toString());
+        Assert.assertEquals(object, parser.parse(text));
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(object.toJSONString(), ((JSONObject) parser.parse(bytes, 0, bytes.length)).toJSONString());
+        Assert.assertTrue(object.toJSONString().contains("\"big\":1e400"));
+        Assert.assertTrue(object.toJSONString().contains("[-0,2E+3]"));
+
+        JSONObject big = (JSONObject) parser.parse("{\"n\":12345678901234567890,\"m\":-9223372036854775809}");
+        Assert.assertEquals(new BigInteger("12345678901234567890"), big.getBigInteger("n"));
+        Assert.assertEquals(new BigInteger("-9223372036854775809"), ((LazyNumber) big.get("m")).value());
+        Assert.assertEquals(new BigInteger("12345678901234567890").longValue(), ((LazyNumber) big.get("n")).longValue());
+        Assert.assertEquals(new BigInteger("12345678901234567890").hashCode(), big.get("n").hashCode());
+        Assert.assertEquals(big.get("n"), new LazyNumber("12345678901234567890"));
+    }
+
+    @Test
+    public void testExactNumbers() throws Exception {
+        String text = "[0.1,1.50,-2.5e-3,12345678901234567890.123456789,42,-9223372036854775809,1e400]";
+        JSONParser parser = new JSONParser();
+        parser.setNumberFactory(ExactNumberFactory.INSTANCE);
+        JSONArray array = (JSONArray) parser.parse(text);
+        Assert.assertEquals(new BigDecimal("0.1"), array.get(0));
+        Assert.assertEquals(new BigDecimal("1.50"), array.get(1));
+        Assert.assertEquals(new BigDecimal("-2.5e-3"), array.get(2));
+        Assert.assertEquals(new BigDecimal("12345678901234567890.123456789"), array.get(3));
+        Assert.assertEquals(Long.valueOf(42), array.get(4));
+        Assert.assertEquals(new BigInteger("-9223372036854775809"), array.get(5));
+        Assert.assertEquals(new BigDecimal("1e400"), array.get(6));
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(array, parser.parse(bytes, 0, bytes.length));
+        Assert.assertEquals("[0.1,1.50,-0.0025,12345678901234567890.123456789,42,-9223372036854775809,1E+400]",
+                array.toJSONString());
+    }
+
+    @Test
+    public void testJSONReader() throws Exception {
+        JSONReader reader = new JSONReader("{\"id\":7,\"skip\":{\"a\":[1,{}]},\"tags\":[\"x\",true],\"name\":\"n\"}");
+        Assert.assertEquals(JSONReader.START_OBJECT, reader.nextToken());
+        Assert.assertEquals(JSONReader.FIELD_NAME, reader.nextToken());
+        Assert.assertEquals("id", reader.currentName());
+        Assert.assertEquals(JSONReader.VALUE_NUMBER, reader.nextToken());
+        Assert.assertEquals(7, reader.getLong());
+        Assert.assertEquals("id", reader.currentName());
+        Assert.assertEquals(JSONReader.FIELD_NAME, reader.nextToken());
+        Assert.assertEquals(JSONReader.START_OBJECT, reader.nextToken());
+        Assert.assertEquals("skip", reader.currentName());
+        reader.skipChildren();
+        Assert.assertEquals(JSONReader.END_OBJECT, reader.currentToken());
+        Assert.assertEquals("skip", reader.currentName());
+        Assert.assertEquals(JSONReader.FIELD_NAME, reader.nextToken());
+        Assert.assertEquals(JSONReader.START_ARRAY, reader.nextToken());
+        Assert.assertEquals(JSONReader.VALUE_STRING, reader.nextToken());
+        Assert.assertEquals("x", reader.getString());
+        Assert.assertNull(reader.currentName());
+        Assert.assertEquals(JSONReader.VALUE_TRUE, reader.nextToken());
+        Assert.assertEquals(JSONReader.END_ARRAY, reader.nextToken());
+        Assert.assertEquals(JSONReader.FIELD_NAME, reader.nextToken());
+        Assert.assertEquals(JSONReader.VALUE_STRING, reader.nextToken());
+        Assert.assertEquals("name", reader.currentName());
+        Assert.assertEquals(JSONReader.END_OBJECT, reader.nextToken());
+        Assert.assertEquals(JSONReader.END_DOCUMENT, reader.nextToken());
+
+        byte[] bytes = ("[" + DOCUMENT + "," + DOCUMENT + "]").getBytes(StandardCharsets.UTF_8);
+        reader = new JSONReader(new ByteArrayInputStream(bytes));
+        Assert.assertEquals(JSONReader.START_ARRAY, reader.nextToken());
+        int records = 0;
+        while (reader.nextToken() == JSONReader.START_OBJECT) {
+            Assert.assertEquals(new JSONParser().parse(DOCUMENT), reader.readValue());
+            records++;
+        }
+        Assert.assertEquals(2, records);
+
+        try {
+            reader = new JSONReader("[1,}");
+            while (reader.nextToken() != JSONReader.END_DOCUMENT) {
+            }
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(ParseException.ERROR_UNEXPECTED_TOKEN, pe.getErrorType());
+            Assert.assertEquals(3, pe.getPosition());
+        }
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        StringWriter out = new StringWriter();
+        JsonLinesWriter writer = new JsonLinesWriter(out);
+        JSONObject record = new JSONObject();
+        record.put("id", 1L);
+        record.put("tags", new JSONArray());
+        writer.write(record);
+        writer.write(new JSONParser().parse(DOCUMENT));
+        writer.write("text");
+        writer.flush();
+        Assert.assertEquals(3, writer.getRecordCount());
+        Assert.assertEquals(3, out.toString().split("\n").length);
+
+        JsonLinesReader lines = new JsonLinesReader(new StringReader(out.toString() + "\n\n"));
+        Assert.assertEquals(record, lines.nextObject());
+        Assert.assertEquals(new JSONParser().parse(DOCUMENT), lines.next());
+        Assert.assertEquals("text", lines.next());
+        Assert.assertFalse(lines.hasNext());
+
+        byte[] bytes = "{\"a\":[1,{\"b\":2}]}\n[]\n{\"c\":3}\n".getBytes(StandardCharsets.UTF_8);
+        lines = new JsonLinesReader(new ByteArrayInputStream(bytes));
+        final StringBuilder events = new StringBuilder();
+        ContentHandler handler = new ContentHandlerAdapter() {
+            @Override
+            public void startJSON() {
+                events.append('<');
+            }
+
+            @Override
+            public void endJSON() {
+                events.append('>');
+            }
+
+            @Override
+            public boolean startObjectEntry(String key) {
+                events.append(key);
+                return !"c".equals(key);
+            }
+
+            @Override
+            public boolean endObjectEntry() {
+                events.append(';');
+                return true;
+            }
+
+            @Override
+            public boolean primitive(Object value) {
+                events.append(value);
+                return true;
+            }
+        };
+        while (lines.next(handler)) {
+        }
+        Assert.assertEquals("<a1b2;;><><c", events.toString());
+        Assert.assertEquals(3, lines.getRecordCount());
+
+        try {
+            lines = new JsonLinesReader(new StringReader("{\"a\":1}\n{\"a\":}"));
+            lines.next();
+            lines.next();
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(13, pe.getPosition());
+        }
+    }
+
+    @Test
+    public void testParseArrayParallel() throws Exception {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i == 0 ? "" : ",\n").append("{\"id\":").append(i).append(",\"s\":\"],\\\"[{\",\"a\":[").append(i).append("]}");
+        }
+        String text = sb.append("]").toString();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Object expected = new JSONParser().parse(text);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assert.assertEquals(expected, new JSONParser().parseArrayParallel(bytes, 0, bytes.length, pool));
+
+            Path file = Files.createTempFile("melawi", ".json");
+            try {
+                Files.write(file, bytes);
+                final List<Object> elements = new ArrayList<>();
+                new JSONParser().parseArrayParallel(file, pool, elements::add);
+                Assert.assertEquals(expected, elements);
+            } finally {
+                Files.delete(file);
+            }
+
+            ByteBuffer[] windows = new ByteBuffer[(bytes.length + 999) / 1000];
+            for (int i = 0; i < windows.length; i++) {
+                windows[i] = ByteBuffer.wrap(bytes, i * 1000, Math.min(1000, bytes.length - i * 1000)).slice();
+            }
+            ParallelArrayParser parallel = new ParallelArrayParser(windows, 1000, null, null, null);
+            long[] bounds = parallel.scan(100);
+            Assert.assertTrue(bounds.length > 100);
+            List<Object> elements = new ArrayList<>();
+            parallel.parse(bounds, pool, elements::add);
+            Assert.assertEquals(expected, elements);
+
+            for (String malformed : new String[]{"[1,{\"a\":}]", "[1,2", "[1] 2", " {\"a\":[1,2,3]}", "\n7", ""}) {
+                bytes = malformed.getBytes(StandardCharsets.UTF_8);
+                try {
+                    new JSONParser().parseArrayParallel(bytes, 0, bytes.length, pool);
+                    Assert.fail(malformed);
+                } catch (ParseException pe) {
+                    Assert.assertEquals(ParseException.ERROR_UNEXPECTED_TOKEN, pe.getErrorType());
+                    try {
+                        new JSONParser().parse(malformed);
+                        Assert.assertEquals(malformed.length() - malformed.trim().length(), pe.getPosition());
+                        Assert.assertFalse(pe.getMessage(), pe.getMessage().contains("1,2,3"));
+                    } catch (ParseException expectedError) {
+                        Assert.assertEquals(expectedError.getPosition(), pe.getPosition());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseLazy() throws Exception {
+        String text = "{\"id\":7,\"name\":\"caf\u00e9\",\"esc\":\"a\\\"b\",\"n\":null,\"id\":8,"
+                + "\"items\":[1,2.5,true,{\"k\":[]}],\"o\":{\"x\":\"y\"}}";
+        JSONParser parser = new JSONParser();
+        LazyJSONObject object = (LazyJSONObject) parser.parseLazy(text);
+        Assert.assertEquals(8, object.getLong("id"));
+        Assert.assertEquals("caf\u00e9", object.getString("name"));
+        Assert.assertEquals("a\"b", object.get("esc"));
+        Assert.assertTrue(object.containsKey("n"));
+        Assert.assertTrue(object.isNull("n"));
+        Assert.assertFalse(object.has("missing"));
+        LazyJSONArray items = object.getJSONArray("items");
+        Assert.assertEquals(4, items.size());
+        Assert.assertEquals(2.5, items.getDouble(1), 0);
+        Assert.assertTrue(items.getBoolean(2));
+        Assert.assertEquals(0, items.getJSONObject(3).getJSONArray("k").size());
+        Assert.assertEquals("y", object.getJSONObject("o").getString("x"));
+        Assert.assertEquals(8, object.getByte("id"));
+        Assert.assertEquals(8, object.getShort("id"));
+        Assert.assertEquals(BigInteger.valueOf(8), object.getBigInteger("id"));
+        Assert.assertEquals(new BigDecimal("2.5"), items.getBigDecimal(1));
+        Assert.assertEquals(2.5f, items.getFloat(1), 0);
+        Assert.assertNull(object.getBigDecimal("n"));
+        Assert.assertEquals(3, object.getInteger("name", 3));
+        Assert.assertEquals(BigInteger.ONE, items.getBigInteger(1, BigInteger.ONE));
+        Assert.assertEquals(-1, items.getLong(9, -1));
+        Assert.assertEquals("d", items.getString(0, "d"));
+        Assert.assertEquals(parser.parse(text), object.toJSONObject());
+        Assert.assertEquals(parser.parse(text), parser.parse(object.toJSONString()));
+
+        Assert.assertEquals("x", parser.parseLazy("\"x\""));
+        Assert.assertEquals(new BigInteger("12345678901234567890"), ((LazyJSONArray) parser.parseLazy("[12345678901234567890]")).get(0));
+        Assert.assertEquals(new JSONArray(), ((LazyJSONArray) parser.parseLazy(" [ ] ")).toJSONArray());
+
+        String malformed = "{\"a\":[1,2}";
+        try {
+            parser.parseLazy(malformed);
+            Assert.fail();
+        } catch (ParseException pe) {
+            try {
+                parser.parse(malformed);
+                Assert.fail();
+            } catch (ParseException expected) {
+                Assert.assertEquals(expected.getPosition(), pe.getPosition());
+            }
+        }
+    }
+
+    @Test
+    public void testExtract() throws Exception {
+        String text = "{\"meta\":{\"id\":42,\"skip\":{\"s\":\"}]\\\"{[\"}},\"blob\":[1,[2,{\"x\":3}]],"
+                + "\"items\":[{\"sku\":\"a\",\"n\":1},{\"n\":2},{\"sku\":\"c\"}],\"tail\":true}";
+        JSONParser parser = new JSONParser();
+        JSONObject result = parser.extract(new StringReader(text), "$.meta.id", "$.items[*].sku", "$['items'][1]", "$.missing", "$.tail");
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(42L, result.get("$.meta.id"));
+        Assert.assertEquals(parser.parse("[\"a\",\"c\"]"), result.get("$.items[*].sku"));
+        Assert.assertEquals(parser.parse("{\"n\":2}"), result.get("$['items'][1]"));
+        Assert.assertEquals(Boolean.TRUE, result.get("$.tail"));
+        Assert.assertFalse(result.containsKey("$.missing"));
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(result, parser.extract(bytes, 0, bytes.length, "$.meta.id", "$.items[*].sku", "$['items'][1]", "$.missing", "$.tail"));
+        Assert.assertEquals(parser.parse("{\"$.blob[1][1].x\":3,\"$.blob\":[1,[2,{\"x\":3}]]}"),
+                parser.extract(new StringReader(text), "$.blob[1][1].x", "$.blob"));
+
+        try {
+            parser.extract(new StringReader("{\"a\":1,\"b\":[2}"), "$.a");
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(ParseException.ERROR_UNEXPECTED_TOKEN, pe.getErrorType());
+        }
+        try {
+            parser.extract(new StringReader(text), "meta.id");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testSkipValue() throws Exception {
+        String text = "{\"skip\":{\"a\":[1,\"]}\\\"\"]},\"keep\":[1,{\"x\":2},[3]],\"last\":\"z\"}";
+        final JSONParser parser = new JSONParser();
+        final StringBuilder events = new StringBuilder();
+        ContentHandler handler = new ContentHandlerAdapter() {
+            @Override
+            public boolean startObject() {
+                events.append('{');
+                if (events.length() > 1) {
+                    parser.skipValue();
+                }
+                return true;
+            }
+
+            @Override
+            public boolean endObject() {
+                events.append('}');
+                return true;
+            }
+
+            @Override
+            public boolean startObjectEntry(String key) {
+                events.append(key).append(':');
+                if (key.equals("skip")) {
+                    parser.skipValue();
+                }
+                return true;
+            }
+
+            @Override
+            public boolean endObjectEntry() {
+                events.append(';');
+                return true;
+            }
+
+            @Override
+            public boolean startArray() {
+                events.append('[');
+                return true;
+            }
+
+            @Override
+            public boolean endArray() {
+                events.append(']');
+                return true;
+            }
+
+            @Override
+            public boolean primitive(Object value) {
+                events.append(value).append(' ');
+                return true;
+            }
+        };
+        parser.parse(text, handler);
+        Assert.assertEquals("{skip:;keep:[1 {}[3 ]];last:z ;}", events.toString());
+
+        events.setLength(0);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        parser.parse(bytes, 0, bytes.length, handler);
+        Assert.assertEquals("{skip:;keep:[1 {}[3 ]];last:z ;}", events.toString());
+
+        try {
+            parser.parse("{\"skip\":[1,2}", handler);
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(ParseException.ERROR_UNEXPECTED_TOKEN, pe.getErrorType());
+        }
+    }
+
+    @Test
+    public void testNonBlockingParser() throws Exception {
+        String text = "{\"caf\u00e9\":[\"\\u00e9\\\"\\n\",-12.5e1,true,null],\"n\":123456789,\"o\":{}}";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final List<Object> expected = new ArrayList<>();
+        new JSONParser().parse(bytes, 0, bytes.length, new ContentHandlerAdapter() {
+            @Override
+            public boolean startObjectEntry(String key) {
+                expected.add(key);
+                return true;
+            }
+
+            @Override
+            public boolean primitive(Object value) {
+                expected.add(value);
+                return true;
+            }
+        });
+
+        for (int fragment = 1; fragment <= 4; fragment++) {
+            final List<Object> events = new ArrayList<>();
+            NonBlockingJSONParser parser = new NonBlockingJSONParser(new ContentHandlerAdapter() {
+                @Override
+                public boolean startObjectEntry(String key) {
+                    events.add(key);
+                    return true;
+                }
+
+                @Override
+                public boolean primitive(Object value) {
+                    events.add(value);
+                    return events.size() != 3;
+                }
+            });
+            for (int i = 0; i < bytes.length; i += fragment) {
+                parser.feed(ByteBuffer.wrap(bytes, i, Math.min(fragment, bytes.length - i)));
+            }
+            Assert.assertTrue(parser.isPaused());
+            Assert.assertEquals(expected.subList(0, 3), events);
+            parser.resume();
+            Assert.assertFalse(parser.isDone());
+            parser.endOfInput();
+            Assert.assertTrue(parser.isDone());
+            Assert.assertEquals(expected, events);
+        }
+
+        NonBlockingJSONParser parser = new NonBlockingJSONParser(new ContentHandlerAdapter());
+        parser.feed(new byte[]{'[', '1', ','}, 0, 3);
+        try {
+            parser.endOfInput();
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(ParseException.ERROR_UNEXPECTED_TOKEN, pe.getErrorType());
+            Assert.assertEquals(3, pe.getPosition());
+        }
+    }
+
+    @Test
+    public void testStringSlices() throws Exception {
+        String text = "{\"name\":\"plain\",\"escaped\":\"a\\n/b\",\"empty\":\"\",\"list\":[\"x\",\"caf\u00e9\"]}";
+        JSONObject eager = (JSONObject) new JSONParser().parse(text);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+
+        JSONParser parser = new JSONParser();
+        parser.setStringSlices(true);
+        Assert.assertTrue(parser.isStringSlices());
+        JSONObject[] parsed = {
+            (JSONObject) parser.parse(text),
+            (JSONObject) parser.parse(bytes, 0, bytes.length),
+            (JSONObject) parser.parse(direct)
+        };
+        for (JSONObject object : parsed) {
+            Assert.assertTrue(object.get("name") instanceof StringSlice);
+            Assert.assertEquals("plain", object.getString("name"));
+            Assert.assertEquals("a\n/b", object.get("escaped"));
+            Assert.assertTrue(object.isEmpty("empty"));
+            Assert.assertEquals(eager.toJSONString(), object.toJSONString());
+        }
+        Assert.assertTrue(parsed[0].getJSONArray("list").get(1) instanceof StringSlice);
+        Assert.assertEquals("x", parser.extract(bytes, 0, bytes.length, "$.list[0]").getString("$.list[0]"));
+        Assert.assertEquals("caf\u00e9", parsed[1].getJSONArray("list").get(1));
+
+        StringSlice slice = new StringSlice("[\"a\u2028b\"]", 2, 5);
+        Assert.assertTrue(slice.contentEquals("a\u2028b"));
+        Assert.assertEquals("a\u2028b".hashCode(), slice.hashCode());
+        Assert.assertEquals("\"a\\u2028b\"", slice.toJSONString());
+        Assert.assertNotEquals("a\u2028b", slice);
+    }
+
+    @Test
+    public void testPlainStringPositions() throws Exception {
+        String text = "[\"ab\", \"c\\nd\", \"\"]";
+        final JSONParser parser = new JSONParser();
+        final List<Object> events = new ArrayList<>();
+        parser.parse(text, new ContentHandlerAdapter() {
+            @Override
+            public boolean primitive(Object value) {
+                events.add(value);
+                events.add(parser.getPosition());
+                return true;
+            }
+        });
+        // every string is reported at its closing quote
+        Assert.assertEquals(Arrays.asList("ab", 4, "c\nd", 12, "", 16), events);
+
+        try {
+            parser.parse("[\"ab\" x]");
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(6, pe.getPosition());
+        }
+    }
+
+    @Test
+    public void testParseChars() throws Exception {
+        char[] chars = ("--" + DOCUMENT + "--").toCharArray();
+        JSONParser parser = new JSONParser();
+        Assert.assertEquals(parser.parse(DOCUMENT), parser.parse(chars, 2, DOCUMENT.length()));
+        Assert.assertEquals("--" + DOCUMENT + "--", new String(chars));
+
+        try {
+            parser.parse("[1,2".toCharArray(), 0, 4);
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(ParseException.ERROR_UNEXPECTED_TOKEN, pe.getErrorType());
+            Assert.assertEquals(4, pe.getPosition());
+        }
+        try {
+            parser.parse("xx[1 x]".toCharArray(), 2, 5);
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(3, pe.getPosition());
+        }
+    }
+
+    @Test
+    public void testIntegers() throws Exception {
+        String text = "[0,-0,9223372036854775807,-9223372036854775808,9223372036854775808,-99999999999999999999,512,512]";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        JSONParser parser = new JSONParser();
+        parser.setLongCache(new LongCache(0, 1000));
+        for (JSONArray array : new JSONArray[]{(JSONArray) parser.parse(text), (JSONArray) parser.parse(bytes, 0, bytes.length)}) {
+            Assert.assertEquals(0L, array.get(0));
+            Assert.assertEquals(0L, array.get(1));
+            Assert.assertEquals(Long.MAX_VALUE, array.get(2));
+            Assert.assertEquals(Long.MIN_VALUE, array.get(3));
+            Assert.assertEquals(new BigInteger("9223372036854775808"), array.get(4));
+            Assert.assertEquals(new BigInteger("-99999999999999999999"), array.get(5));
+            Assert.assertSame(array.get(6), array.get(7));
+        }
+    }
+
+    @Test
+    public void testHandWrittenLexer() throws Exception {
+        JSONParser generated = new JSONParser();
+        JSONParser parser = new JSONParser();
+        parser.setHandWrittenLexer(true);
+        Assert.assertTrue(parser.isHandWrittenLexer());
+        String text = "[" + DOCUMENT + ",\"\\/\\q\",-0.5e-3,12345678901234567890, \"ab\" ]";
+        Object expected = generated.parse(text);
+        Assert.assertEquals(expected, parser.parse(text));
+        Assert.assertEquals(expected, parser.parse(new StringReader(text)));
+        Assert.assertEquals(expected, parser.parse(("  " + text).toCharArray(), 2, text.length()));
+
+        String[] errors = {"[1,2", "{\"a\":}", "[\"ab\" x]", "[tru]", "{1:2}", "[1] 2"};
+        for (String error : errors) {
+            try {
+                generated.parse(error);
+                Assert.fail(error);
+            } catch (ParseException expectedError) {
+                try {
+                    parser.parse(error);
+                    Assert.fail(error);
+                } catch (ParseException pe) {
+                    Assert.assertEquals(error, expectedError.getErrorType(), pe.getErrorType());
+                    Assert.assertEquals(error, expectedError.getPosition(), pe.getPosition());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLexerTokens() throws Exception {
+        String text = "{\"a\":[1,\"x\\ty\",true,null]}";
+        Yylex generated = new Yylex((Reader) null);
+        generated.yyreset(text);
+        CharLexer handWritten = new CharLexer();
+        handWritten.yyreset(text);
+        Utf8Lexer utf8 = new Utf8Lexer();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        utf8.yyreset(bytes, 0, bytes.length);
+
+        List<Object> expected = Arrays.asList(Yytoken.TYPE_LEFT_BRACE, null, Yytoken.TYPE_VALUE, "a",
+                Yytoken.TYPE_COLON, null, Yytoken.TYPE_LEFT_SQUARE, null, Yytoken.TYPE_VALUE, 1L,
+                Yytoken.TYPE_COMMA, null, Yytoken.TYPE_VALUE, "x\ty", Yytoken.TYPE_COMMA, null,
+                Yytoken.TYPE_VALUE, Boolean.TRUE, Yytoken.TYPE_COMMA, null, Yytoken.TYPE_VALUE, null,
+                Yytoken.TYPE_RIGHT_SQUARE, null, Yytoken.TYPE_RIGHT_BRACE, null, Yytoken.TYPE_EOF, null);
+        for (Lexer lexer : new Lexer[]{generated, handWritten, utf8}) {
+            List<Object> tokens = new ArrayList<>();
+            int type;
+            do {
+                type = lexer.yylex();
+                Assert.assertEquals(type, lexer.type());
+                tokens.add(type);
+                tokens.add(lexer.value());
+            } while (type != Yytoken.TYPE_EOF);
+            Assert.assertEquals(expected, tokens);
+            Assert.assertEquals(Yytoken.TYPE_EOF, lexer.yylex());
+        }
+
+        try {
+            new JSONParser().parse("[1,]]");
+            Assert.fail();
+        } catch (ParseException pe) {
+            Yytoken token = (Yytoken) pe.getUnexpectedObject();
+            Assert.assertEquals(Yytoken.TYPE_RIGHT_SQUARE, token.type);
+        }
+    }
+
+    @Test
+    public void testSizeProfile() throws Exception {
+        String text = "{\"items\":[{\"id\":1,\"tags\":[\"a\",\"b\",\"c\"]},{\"id\":2,\"tags\":[]}],\"meta\":{\"n\":2,\"ok\":true}}";
+        final List<String> calls = new ArrayList<>();
+        SizedContainerFactory factory = new SizedContainerFactory() {
+            @Override
+            public Map createObjectContainer(int depth, String key, int sizeHint) {
+                calls.add("{" + depth + key + sizeHint);
+                return null;
+            }
+
+            @Override
+            public List createArrayContainer(int depth, String key, int sizeHint) {
+                calls.add("[" + depth + key + sizeHint);
+                return new ArrayList(sizeHint);
+            }
+        };
+        JSONParser parser = new JSONParser();
+        Object expected = parser.parse(text);
+        Assert.assertEquals(expected, parser.parse(text, factory));
+        Assert.assertEquals(Arrays.asList("{0null0", "[1items0", "{2null0", "[3tags0", "{2null0", "[3tags0", "{1meta0"), calls);
+
+        SizeProfile profile = new SizeProfile();
+        parser.setSizeProfile(profile);
+        Assert.assertSame(profile, parser.getSizeProfile());
+        Assert.assertEquals(expected, parser.parse(text));
+        calls.clear();
+        Assert.assertEquals(expected, parser.parse(text, factory));
+        // an empty tags array lowers the size learned for tags, a larger one raises it at once
+        Assert.assertEquals(Arrays.asList("{0null2", "[1items2", "{2null2", "[3tags2", "{2null2", "[3tags3", "{1meta2"), calls);
+
+        profile.clear();
+        calls.clear();
+        parser.parse(text, factory);
+        Assert.assertEquals("{0null0", calls.get(0));
+
+        try {
+            new SizeProfile(-1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Invalid capacity: -1", e.getMessage());
+        }
+    }
+
+    enum Status {
+        ACTIVE, CLOSED
+    }
+
+    static class Line {
+        String sku;
+        int quantity;
+        BigDecimal price;
+    }
+
+    static class Entity {
+        long id;
+    }
+
+    static class Order extends Entity {
+        String customer;
+        Status status;
+        boolean paid = true;
+        double[] weights;
+        List<Line> lines;
+        Map<String, List<Integer>> counts;
+        Object extra;
+        Order parent;
+        transient String ignored;
+    }
+
+    static class Index {
+        Map<Integer, String> names;
+        Map<? extends CharSequence, Integer> sizes;
+    }
+
+    @Test
+    public void testDataBinding() throws Exception {
+        String text = "{\"id\":12,\"customer\":\"c\\u00e9\",\"status\":\"CLOSED\",\"paid\":null,\"unknown\":{\"a\":[1,{}]},"
+                + "\"weights\":[1,2.5],\"lines\":[{\"sku\":\"A\",\"quantity\":2,\"price\":1.25},{\"sku\":\"B\"}],"
+                + "\"counts\":{\"x\":[1,2]},\"extra\":{\"k\":[true]},\"parent\":{\"id\":3},\"ignored\":\"x\"}";
+        JSONParser parser = new JSONParser();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Order[] orders = {
+            parser.parse(text, Order.class),
+            parser.parse(new StringReader(text), Order.class),
+            parser.parse(bytes, 0, bytes.length, Order.class)
+        };
+        for (Order order : orders) {
+            Assert.assertEquals(12, order.id);
+            Assert.assertEquals("cé", order.customer);
+            Assert.assertEquals(Status.CLOSED, order.status);
+            Assert.assertTrue(order.paid);
+            Assert.assertArrayEquals(new double[]{1, 2.5}, order.weights, 0);
+            Assert.assertEquals(2, order.lines.size());
+            Assert.assertEquals(new BigDecimal("1.25"), order.lines.get(0).price);
+            Assert.assertEquals(0, order.lines.get(1).quantity);
+            Assert.assertEquals(Arrays.asList(1, 2), order.counts.get("x"));
+            Assert.assertEquals(parser.parse("{\"k\":[true]}"), order.extra);
+            Assert.assertEquals(3, order.parent.id);
+            Assert.assertNull(order.parent.lines);
+            Assert.assertNull(order.ignored);
+        }
+
+        Line[] lines = parser.parse("[{\"sku\":\"A\"},null]", Line[].class);
+        Assert.assertEquals("A", lines[0].sku);
+        Assert.assertNull(lines[1]);
+        Assert.assertEquals(Long.valueOf(7), parser.parse("7", Long.class));
+
+        try {
+            parser.parse("{\"id\":\"x\"}", Order.class);
+            Assert.fail();
+        } catch (JSONException je) {
+            Assert.assertTrue(je.getMessage().contains("not a number"));
+        }
+        try {
+            parser.parse("{\"id\":1} {}", Order.class);
+            Assert.fail();
+        } catch (ParseException pe) {
+            Assert.assertEquals(ParseException.ERROR_UNEXPECTED_TOKEN, pe.getErrorType());
+        }
+
+        Assert.assertEquals(Integer.valueOf(1), parser.parse("{\"sizes\":{\"a\":1}}", Index.class).sizes.get("a"));
+        try {
+            parser.parse("{\"names\":{\"1\":\"a\"}}", Index.class);
+            Assert.fail();
+        } catch (JSONException je) {
+            Assert.assertTrue(je.getMessage(), je.getMessage().endsWith("its keys are not strings."));
+        }
+
+        JSONReader reader = new JSONReader("[{\"sku\":\"A\"},{\"sku\":\"B\"}]");
+        reader.nextToken();
+        StringBuilder skus = new StringBuilder();
+        while (reader.nextToken() == JSONReader.START_OBJECT) {
+            skus.append(reader.readValue(Line.class).sku);
+        }
+        Assert.assertEquals("AB", skus.toString());
+
+        // digits a double cannot hold
+        String exact = "{\"lines\":[{\"price\":12345678901234567.89},{\"price\":0.1000000000000000000001}],"
+                + "\"extra\":[0.5,{\"x\":1.5}],\"weights\":[0.1]}";
+        reader = new JSONReader(exact);
+        reader.nextToken();
+        for (Order order : new Order[]{parser.parse(exact, Order.class), reader.readValue(Order.class)}) {
+            Assert.assertEquals(new BigDecimal("12345678901234567.89"), order.lines.get(0).price);
+            Assert.assertEquals(new BigDecimal("0.1000000000000000000001"), order.lines.get(1).price);
+            Assert.assertEquals(parser.parse("[0.5,{\"x\":1.5}]"), order.extra);
+            Assert.assertArrayEquals(new double[]{0.1}, order.weights, 0);
+        }
+        Assert.assertEquals(new BigDecimal("0.1000000000000000000001"), parser.parse("0.1000000000000000000001", BigDecimal.class));
+        Assert.assertEquals(Double.valueOf(2.5), parser.parse("2.5", Number.class));
+        Assert.assertEquals(Double.valueOf(2.5), parser.parse("[2.5]", JSONArray.class).get(0));
+        Assert.assertEquals(parser.parse("[2.5]"), parser.parse("[2.5]", Object.class));
+    }
+
+    static class ContentHandlerAdapter implements ContentHandler {
+
+        @Override
+        public void startJSON() {
+        }
+
+        @Override
+        public void endJSON() {
+        }
+
+        @Override
+        public boolean startObject() {
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            return true;
+        }
+    }
+}